@@ -0,0 +1,99 @@
+/**
+ *    Copyright (C) 2015  Peter Plaimer <dct-tool@tk.jku.at>
+ *
+ *    This file is part of the program
+ *    InterActive Image Processing / Discrete Cosine Transformation (DCT) 
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cx.uni.jk.mms.iaip.dct;
+
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+
+import cx.uni.jk.mms.iaip.mat.ParallelRows;
+
+/**
+ * Common methods of {@link DctEngine}s executing {@link DctPlan}s from the
+ * {@link DctPlanCache}.
+ */
+public abstract class AbstractDctEngine implements DctEngine {
+
+	@Override
+	public void transform(Mat src, Mat dst, boolean inverse) {
+		DctPlanCache.getPlan(this, src.rows(), src.cols(), inverse).execute(src, dst);
+	}
+
+	/**
+	 * copies the area into a float[] once and transforms the blocks there, in
+	 * parallel rows of blocks if the area is large.
+	 */
+	@Override
+	public void transformBlocks(Mat src, Mat dst, Rect area, final int blockSize, final boolean inverse) {
+		final int width = area.width;
+		final int height = area.height;
+		final float[] data = new float[width * height];
+		src.submat(area).get(0, 0, data);
+		int blockRows = (height + blockSize - 1) / blockSize;
+		if (ParallelRows.isParallel(height, width)) {
+			ParallelRows.forEachRowRange(blockRows, blockSize * width, new ParallelRows.RowRangeAction() {
+				@Override
+				public void run(int fromBlockRow, int toBlockRow) {
+					AbstractDctEngine.this.transformBlockRows(data, width, height, blockSize, inverse, fromBlockRow, toBlockRow);
+				}
+			});
+		} else {
+			this.transformBlockRows(data, width, height, blockSize, inverse, 0, blockRows);
+		}
+		dst.submat(area).put(0, 0, data);
+	}
+
+	/**
+	 * transforms the rows of blocks fromBlockRow to toBlockRow - 1 of the width
+	 * x height matrix data in place.
+	 */
+	protected void transformBlockRows(float[] data, int width, int height, int blockSize, boolean inverse, int fromBlockRow, int toBlockRow) {
+		DctPlan plan = null;
+		int rowEnd = Math.min(height, toBlockRow * blockSize);
+		for (int row = fromBlockRow * blockSize; row < rowEnd; row += blockSize) {
+			int rows = Math.min(blockSize, height - row);
+			for (int col = 0; col < width; col += blockSize) {
+				int cols = Math.min(blockSize, width - col);
+				/** blocks at the right and bottom border may need another plan */
+				if (plan == null || plan.getRows() != rows || plan.getCols() != cols) {
+					plan = DctPlanCache.getPlan(this, rows, cols, inverse);
+				}
+				plan.execute(data, row * width + col, width);
+			}
+		}
+	}
+
+	/**
+	 * transforms a rows x cols matrix inside data in place.
+	 * 
+	 * @param data
+	 * @param offset
+	 *            index of the top left value
+	 * @param stride
+	 *            distance between two rows
+	 * @param rows
+	 * @param cols
+	 * @param inverse
+	 *            false for DCT, true for IDCT
+	 */
+	public void transform(float[] data, int offset, int stride, int rows, int cols, boolean inverse) {
+		DctPlanCache.getPlan(this, rows, cols, inverse).execute(data, offset, stride);
+	}
+}
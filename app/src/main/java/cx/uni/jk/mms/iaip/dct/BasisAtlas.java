@@ -0,0 +1,131 @@
+/**
+ *    Copyright (C) 2015  Peter Plaimer <dct-tool@tk.jku.at>
+ *
+ *    This file is part of the program
+ *    InterActive Image Processing / Discrete Cosine Transformation (DCT) 
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cx.uni.jk.mms.iaip.dct;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The cosine basis vectors of one length N, sampled at the pixels of a
+ * display of another length, for showing basis images. The basis image of
+ * the coefficient at column u and row v is the outer product of the vectors
+ * of v and u, so one atlas per edge length serves all N x M coefficients.
+ * 
+ * Vector k holds cos(pi * (2n + 1) * k / 2N) at each display pixel, so it
+ * runs from -1 to 1 without the scale of the orthonormal basis. A pixel
+ * showing several samples n holds their mean, so frequencies above the
+ * display resolution fade to 0 instead of aliasing. Vectors are taken from
+ * {@link CosineBasis} on first use and kept, no trigonometric function is
+ * called for them. The {@link #CACHE_SIZE} atlases used last are shared, see
+ * {@link #forLengths(int, int)}.
+ */
+public class BasisAtlas {
+	/** number of atlases kept for reuse */
+	public static final int CACHE_SIZE = 16;
+
+	/** in access order, so the least recently used is dropped */
+	private static final Map<Long, BasisAtlas> cache = new LinkedHashMap<Long, BasisAtlas>(CACHE_SIZE, 0.75f, true) {
+		private static final long serialVersionUID = 2270945262734915634L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, BasisAtlas> eldest) {
+			return this.size() > CACHE_SIZE;
+		}
+	};
+
+	private final CosineBasis basis;
+	private final int displayLength;
+
+	/** null until requested */
+	private final float[][] vectors;
+
+	private BasisAtlas(int length, int displayLength) {
+		super();
+		if (displayLength <= 0) {
+			throw new IllegalArgumentException("Display length must be > 0.");
+		}
+		this.basis = CosineBasis.forLength(length);
+		this.displayLength = displayLength;
+		this.vectors = new float[length][];
+	}
+
+	/**
+	 * @param length
+	 *            of the basis
+	 * @param displayLength
+	 *            number of pixels showing the length
+	 * @return the shared atlas for the given lengths, created if it is not
+	 *         among the ones used last. Callers asking often should keep it.
+	 */
+	public static BasisAtlas forLengths(int length, int displayLength) {
+		Long key = Long.valueOf((long) length << 32 | displayLength);
+		synchronized (cache) {
+			BasisAtlas atlas = cache.get(key);
+			if (atlas == null) {
+				atlas = new BasisAtlas(length, displayLength);
+				cache.put(key, atlas);
+			}
+			return atlas;
+		}
+	}
+
+	public int getLength() {
+		return this.basis.getLength();
+	}
+
+	public int getDisplayLength() {
+		return this.displayLength;
+	}
+
+	/**
+	 * @param k
+	 *            frequency index
+	 * @return basis function k at each display pixel, -1..1. must not be
+	 *         modified.
+	 */
+	public synchronized float[] getVector(int k) {
+		float[] vector = this.vectors[k];
+		if (vector == null) {
+			int length = this.basis.getLength();
+			/** undo the scale a(k) of the orthonormal basis */
+			float norm = (float) Math.sqrt(k == 0 ? length : length / 2.0d);
+			vector = new float[this.displayLength];
+			for (int pixel = 0; pixel < this.displayLength; pixel++) {
+				/** the samples starting under the pixel */
+				int from = (int) ((long) pixel * length / this.displayLength);
+				int to = (int) ((long) (pixel + 1) * length / this.displayLength);
+				if (to - from <= 1) {
+					/** the sample under the centre of the pixel */
+					int n = (int) ((2L * pixel + 1) * length / (2L * this.displayLength));
+					vector[pixel] = norm * this.basis.get(k, n);
+				} else {
+					double sum = 0;
+					for (int n = from; n < to; n++) {
+						sum += this.basis.get(k, n);
+					}
+					vector[pixel] = (float) (norm * sum / (to - from));
+				}
+			}
+			this.vectors[k] = vector;
+		}
+		return vector;
+	}
+}
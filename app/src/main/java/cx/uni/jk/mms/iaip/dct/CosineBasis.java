@@ -0,0 +1,136 @@
+/**
+ *    Copyright (C) 2015  Peter Plaimer <dct-tool@tk.jku.at>
+ *
+ *    This file is part of the program
+ *    InterActive Image Processing / Discrete Cosine Transformation (DCT) 
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cx.uni.jk.mms.iaip.dct;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The orthonormal DCT-II basis of one length N, as used by OpenCV's
+ * <code>Core.dct()</code>:
+ * 
+ * C[k][n] = a(k) * cos(pi * (2n + 1) * k / 2N), a(0) = sqrt(1/N), a(k) =
+ * sqrt(2/N).
+ * 
+ * Only the 4N distinct cosine values are stored, so single basis vectors can
+ * be produced in O(N) without calling any trigonometric function. Instances
+ * are immutable and shared per length, see {@link #forLength(int)}.
+ */
+public class CosineBasis {
+	private static final Map<Integer, CosineBasis> cache = new HashMap<>();
+
+	private final int length;
+	private final int period;
+	private final float[] cosines;
+	private final float scaleDc;
+	private final float scaleAc;
+
+	public CosineBasis(int length) {
+		super();
+		if (length <= 0) {
+			throw new IllegalArgumentException("Basis length must be > 0.");
+		}
+		this.length = length;
+		this.period = 4 * length;
+
+		/** cos(pi * m / 2N) for one full period */
+		this.cosines = new float[this.period];
+		for (int m = 0; m < this.period; m++) {
+			this.cosines[m] = (float) Math.cos(Math.PI * m / (2.0d * length));
+		}
+
+		this.scaleDc = (float) Math.sqrt(1.0d / length);
+		this.scaleAc = (float) Math.sqrt(2.0d / length);
+	}
+
+	/**
+	 * @param length
+	 * @return the shared basis of the given length, created on first use.
+	 */
+	public static CosineBasis forLength(int length) {
+		synchronized (cache) {
+			CosineBasis basis = cache.get(length);
+			if (basis == null) {
+				basis = new CosineBasis(length);
+				cache.put(length, basis);
+			}
+			return basis;
+		}
+	}
+
+	public int getLength() {
+		return this.length;
+	}
+
+	/**
+	 * @param k
+	 *            frequency index
+	 * @param n
+	 *            sample index
+	 * @return C[k][n]
+	 */
+	public float get(int k, int n) {
+		int m = (int) ((long) (2 * n + 1) * k % this.period);
+		return (k == 0 ? this.scaleDc : this.scaleAc) * this.cosines[m];
+	}
+
+	/**
+	 * fills dst with basis function k at all sample positions, i.e. row k of
+	 * the DCT matrix: dst[n] = C[k][n].
+	 * 
+	 * @param k
+	 * @param dst
+	 *            array of at least N elements
+	 */
+	public void fillFrequencyVector(int k, float[] dst) {
+		float scale = k == 0 ? this.scaleDc : this.scaleAc;
+		int step = (int) (2L * k % this.period);
+		int m = k % this.period;
+		for (int n = 0; n < this.length; n++) {
+			dst[n] = scale * this.cosines[m];
+			m += step;
+			if (m >= this.period) {
+				m -= this.period;
+			}
+		}
+	}
+
+	/**
+	 * fills dst with all basis functions at sample position n, i.e. column n of
+	 * the DCT matrix: dst[k] = C[k][n].
+	 * 
+	 * @param n
+	 * @param dst
+	 *            array of at least N elements
+	 */
+	public void fillSampleVector(int n, float[] dst) {
+		int step = (2 * n + 1) % this.period;
+		int m = step;
+		dst[0] = this.scaleDc;
+		for (int k = 1; k < this.length; k++) {
+			dst[k] = this.scaleAc * this.cosines[m];
+			m += step;
+			if (m >= this.period) {
+				m -= this.period;
+			}
+		}
+	}
+}
@@ -0,0 +1,96 @@
+/**
+ *    Copyright (C) 2015  Peter Plaimer <dct-tool@tk.jku.at>
+ *
+ *    This file is part of the program
+ *    InterActive Image Processing / Discrete Cosine Transformation (DCT) 
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cx.uni.jk.mms.iaip.dct;
+
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+
+/**
+ * An implementation of the orthonormal 2D DCT-II and its inverse, as defined
+ * by OpenCV's <code>Core.dct()</code> and <code>Core.idct()</code>.
+ * 
+ * All mats are of type {@link cx.uni.jk.mms.iaip.mat.MatModel#MAT_TYPE}.
+ * 
+ * @see DctEngineManager
+ */
+public interface DctEngine {
+
+	/**
+	 * @param rows
+	 * @param cols
+	 * @return true if this engine is able to transform a mat or block of the
+	 *         given size itself. Other sizes are transformed by
+	 *         {@link DctEngineManager#getDefaultEngine()}.
+	 */
+	public boolean supports(int rows, int cols);
+
+	/**
+	 * Unlike {@link #supports(int, int)} this is about whole mats of any size
+	 * the user may load, including the ones this engine hands on to the
+	 * default engine. An engine may support small odd sizes, e.g. odd blocks
+	 * at the border, and still answer false here.
+	 * 
+	 * @return true if whole mats of any size can be transformed with this
+	 *         engine selected. false if mats must have even width and even
+	 *         height, like OpenCV requires.
+	 */
+	public boolean supportsOddSizes();
+
+	/**
+	 * transforms src into dst.
+	 * 
+	 * @param src
+	 * @param dst
+	 *            of the same size as src, may be a sub mat
+	 * @param inverse
+	 *            false for DCT, true for IDCT
+	 */
+	public void transform(Mat src, Mat dst, boolean inverse);
+
+	/**
+	 * transforms each block inside area of src independently into the same
+	 * block of dst.
+	 * 
+	 * @param src
+	 * @param dst
+	 *            of the same size as src
+	 * @param area
+	 *            aligned to blockSize at its top left corner. blocks at its
+	 *            right and bottom border may be smaller than blockSize.
+	 * @param blockSize
+	 *            edge length of the blocks
+	 * @param inverse
+	 *            false for DCT, true for IDCT
+	 */
+	public void transformBlocks(Mat src, Mat dst, Rect area, int blockSize, boolean inverse);
+
+	/**
+	 * prepares the transformation of one size. called by {@link DctPlanCache}
+	 * only, use {@link DctPlanCache#getPlan(DctEngine, int, int, boolean)}.
+	 * 
+	 * @param rows
+	 * @param cols
+	 * @param inverse
+	 *            false for DCT, true for IDCT
+	 * @return a new plan
+	 */
+	public DctPlan createPlan(int rows, int cols, boolean inverse);
+}
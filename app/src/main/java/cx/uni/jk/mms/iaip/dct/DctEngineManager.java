@@ -0,0 +1,47 @@
+/**
+ *    Copyright (C) 2015  Peter Plaimer <dct-tool@tk.jku.at>
+ *
+ *    This file is part of the program
+ *    InterActive Image Processing / Discrete Cosine Transformation (DCT) 
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cx.uni.jk.mms.iaip.dct;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Manager for all implementations of {@link DctEngine}
+ */
+public class DctEngineManager {
+
+	private static List<DctEngine> engines = new ArrayList<>();
+
+	/** initializer */
+	static {
+		engines.add(new OpenCvDctEngine());
+		engines.add(new JavaDctEngine());
+		engines.add(new FftDctEngine());
+	}
+
+	public static DctEngine getDefaultEngine() {
+		return engines.get(0);
+	}
+
+	public static DctEngine[] getEnginesArray() {
+		return engines.toArray(new DctEngine[0]);
+	}
+}
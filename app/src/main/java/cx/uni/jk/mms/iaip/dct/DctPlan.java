@@ -0,0 +1,111 @@
+/**
+ *    Copyright (C) 2015  Peter Plaimer <dct-tool@tk.jku.at>
+ *
+ *    This file is part of the program
+ *    InterActive Image Processing / Discrete Cosine Transformation (DCT) 
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cx.uni.jk.mms.iaip.dct;
+
+import org.opencv.core.Mat;
+
+/**
+ * A prepared DCT or IDCT of one size by one {@link DctEngine}, holding all
+ * tables which only depend on the size, and scratch buffers for each thread
+ * executing it, see {@link ScratchPool}.
+ * 
+ * Plans are immutable apart from their scratch buffers and may be executed by
+ * several threads at once. Get them from {@link DctPlanCache}, which calls
+ * {@link #release()} when it drops them.
+ */
+public abstract class DctPlan {
+	private final DctEngine engine;
+	private final int rows;
+	private final int cols;
+	private final boolean inverse;
+
+	/** the whole mat as float[], one per executing thread */
+	private final ScratchPool<float[]> data = new ScratchPool<float[]>() {
+		@Override
+		protected float[] create() {
+			return new float[DctPlan.this.rows * DctPlan.this.cols];
+		}
+	};
+
+	public DctPlan(DctEngine engine, int rows, int cols, boolean inverse) {
+		super();
+		this.engine = engine;
+		this.rows = rows;
+		this.cols = cols;
+		this.inverse = inverse;
+	}
+
+	public DctEngine getEngine() {
+		return this.engine;
+	}
+
+	public int getRows() {
+		return this.rows;
+	}
+
+	public int getCols() {
+		return this.cols;
+	}
+
+	public boolean isInverse() {
+		return this.inverse;
+	}
+
+	/**
+	 * transforms src into dst. the default implementation copies src into a
+	 * float[] once and transforms that.
+	 * 
+	 * @param src
+	 *            of size rows x cols
+	 * @param dst
+	 *            of size rows x cols, may be a sub mat
+	 */
+	public void execute(Mat src, Mat dst) {
+		float[] buffer = this.data.take();
+		try {
+			src.get(0, 0, buffer);
+			this.execute(buffer, 0, this.cols);
+			dst.put(0, 0, buffer);
+		} finally {
+			this.data.give(buffer);
+		}
+	}
+
+	/**
+	 * drops the scratch buffers, at once if spare, else when the executions
+	 * using them end. The plan stays usable, but allocates new ones.
+	 * Subclasses with scratch of their own release it too.
+	 */
+	public void release() {
+		this.data.release();
+	}
+
+	/**
+	 * transforms the rows x cols matrix inside data in place.
+	 * 
+	 * @param data
+	 * @param offset
+	 *            index of the top left value
+	 * @param stride
+	 *            distance between two rows
+	 */
+	public abstract void execute(float[] data, int offset, int stride);
+}
@@ -0,0 +1,120 @@
+/**
+ *    Copyright (C) 2015  Peter Plaimer <dct-tool@tk.jku.at>
+ *
+ *    This file is part of the program
+ *    InterActive Image Processing / Discrete Cosine Transformation (DCT) 
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cx.uni.jk.mms.iaip.dct;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Least recently used cache of {@link DctPlan}s, shared by all mats.
+ * 
+ * The cache is bounded by the number of plans and by the sum of their sizes
+ * in cells, which limits the memory held by their scratch buffers, as plans
+ * dropped are released. The most recently used plan is always kept.
+ */
+public class DctPlanCache {
+	public static final int MAX_PLANS = 32;
+	/**
+	 * 4096 x 4096 floats, 64 MB per buffer. A plan holds up to two buffers of
+	 * its size for each thread executing it, the copy of the mat of
+	 * {@link DctPlan#execute(org.opencv.core.Mat, org.opencv.core.Mat)} and the
+	 * transposed matrix of the parallel passes, so 128 MB per thread.
+	 */
+	public static final long MAX_CELLS = 4096L * 4096L;
+
+	private static final LinkedHashMap<Key, DctPlan> plans = new LinkedHashMap<>(16, 0.75f, true);
+	private static long cells = 0;
+
+	private DctPlanCache() {
+		/** static methods only */
+	}
+
+	/**
+	 * @param engine
+	 * @param rows
+	 * @param cols
+	 * @param inverse
+	 * @return the cached plan, created by the engine if necessary
+	 */
+	public static DctPlan getPlan(DctEngine engine, int rows, int cols, boolean inverse) {
+		Key key = new Key(engine, rows, cols, inverse);
+		synchronized (plans) {
+			DctPlan plan = plans.get(key);
+			if (plan == null) {
+				plan = engine.createPlan(rows, cols, inverse);
+				plans.put(key, plan);
+				cells += (long) rows * cols;
+				evict();
+			}
+			return plan;
+		}
+	}
+
+	public static void clear() {
+		synchronized (plans) {
+			for (DctPlan plan : plans.values()) {
+				plan.release();
+			}
+			plans.clear();
+			cells = 0;
+		}
+	}
+
+	/** removes least recently used plans, but never the last one */
+	private static void evict() {
+		Iterator<Map.Entry<Key, DctPlan>> it = plans.entrySet().iterator();
+		while ((plans.size() > MAX_PLANS || cells > MAX_CELLS) && plans.size() > 1) {
+			DctPlan plan = it.next().getValue();
+			cells -= (long) plan.getRows() * plan.getCols();
+			it.remove();
+			plan.release();
+		}
+	}
+
+	private static final class Key {
+		private final DctEngine engine;
+		private final int rows;
+		private final int cols;
+		private final boolean inverse;
+
+		Key(DctEngine engine, int rows, int cols, boolean inverse) {
+			this.engine = engine;
+			this.rows = rows;
+			this.cols = cols;
+			this.inverse = inverse;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return this.engine == other.engine && this.rows == other.rows && this.cols == other.cols && this.inverse == other.inverse;
+		}
+
+		@Override
+		public int hashCode() {
+			return ((System.identityHashCode(this.engine) * 31 + this.rows) * 31 + this.cols) * 2 + (this.inverse ? 1 : 0);
+		}
+	}
+}
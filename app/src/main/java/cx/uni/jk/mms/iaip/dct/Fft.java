@@ -0,0 +1,239 @@
+/**
+ *    Copyright (C) 2015  Peter Plaimer <dct-tool@tk.jku.at>
+ *
+ *    This file is part of the program
+ *    InterActive Image Processing / Discrete Cosine Transformation (DCT) 
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cx.uni.jk.mms.iaip.dct;
+
+/**
+ * Complex discrete Fourier transform of one fixed length in O(N log N).
+ * 
+ * Powers of two are transformed by the iterative radix-2 algorithm. Any other
+ * length, including primes, is transformed by Bluestein's algorithm, which
+ * turns the DFT into a convolution with a chirp, done by radix-2 FFTs of a
+ * power of two length of at least 2N - 1.
+ * 
+ * All tables are computed once in the constructor.
+ */
+public class Fft {
+	private final int length;
+
+	/** radix-2 tables, cos and sin of 2 pi k / N for k < N/2 */
+	private final int[] reversed;
+	private final double[] cos;
+	private final double[] sin;
+
+	/** Bluestein tables */
+	private final Fft convolution;
+	private final double[] chirpRe;
+	private final double[] chirpIm;
+	private final double[] kernelRe;
+	private final double[] kernelIm;
+
+	public Fft(int length) {
+		super();
+		if (length <= 0) {
+			throw new IllegalArgumentException("FFT length must be > 0.");
+		}
+		this.length = length;
+
+		if (isPowerOfTwo(length)) {
+			int bits = Integer.numberOfTrailingZeros(length);
+			this.reversed = new int[length];
+			for (int i = 0; i < length; i++) {
+				this.reversed[i] = bits == 0 ? 0 : Integer.reverse(i) >>> (32 - bits);
+			}
+			this.cos = new double[length / 2];
+			this.sin = new double[length / 2];
+			for (int k = 0; k < length / 2; k++) {
+				this.cos[k] = Math.cos(2.0d * Math.PI * k / length);
+				this.sin[k] = Math.sin(2.0d * Math.PI * k / length);
+			}
+
+			this.convolution = null;
+			this.chirpRe = null;
+			this.chirpIm = null;
+			this.kernelRe = null;
+			this.kernelIm = null;
+		} else {
+			this.reversed = null;
+			this.cos = null;
+			this.sin = null;
+
+			/** chirp w[k] = exp(-i pi k^2 / N), k^2 taken modulo 2N for precision */
+			this.chirpRe = new double[length];
+			this.chirpIm = new double[length];
+			for (int k = 0; k < length; k++) {
+				double angle = Math.PI * ((long) k * k % (2L * length)) / length;
+				this.chirpRe[k] = Math.cos(angle);
+				this.chirpIm[k] = -Math.sin(angle);
+			}
+
+			/** FFT of the conjugated chirp, wrapped around for negative indices */
+			int convolutionLength = Integer.highestOneBit(2 * length - 1);
+			if (convolutionLength < 2 * length - 1) {
+				convolutionLength *= 2;
+			}
+			this.convolution = new Fft(convolutionLength);
+			this.kernelRe = new double[convolutionLength];
+			this.kernelIm = new double[convolutionLength];
+			for (int k = 0; k < length; k++) {
+				this.kernelRe[k] = this.chirpRe[k];
+				this.kernelIm[k] = -this.chirpIm[k];
+				if (k > 0) {
+					this.kernelRe[convolutionLength - k] = this.chirpRe[k];
+					this.kernelIm[convolutionLength - k] = -this.chirpIm[k];
+				}
+			}
+			this.convolution.transform(this.kernelRe, this.kernelIm, false);
+		}
+	}
+
+	public int getLength() {
+		return this.length;
+	}
+
+	/**
+	 * @return the number of elements of each scratch array required by
+	 *         {@link #transform(double[], double[], boolean, double[], double[])}
+	 */
+	public int getScratchLength() {
+		return this.convolution == null ? 0 : this.convolution.getLength();
+	}
+
+	/**
+	 * transforms in place, allocating scratch space if necessary.
+	 * 
+	 * @param re
+	 *            real parts, at least N elements
+	 * @param im
+	 *            imaginary parts, at least N elements
+	 * @param inverse
+	 *            false for exp(-i ...), true for exp(+i ...). the inverse is
+	 *            not divided by N.
+	 */
+	public void transform(double[] re, double[] im, boolean inverse) {
+		int scratchLength = this.getScratchLength();
+		this.transform(re, im, inverse, new double[scratchLength], new double[scratchLength]);
+	}
+
+	/**
+	 * transforms in place.
+	 * 
+	 * @param re
+	 *            real parts, at least N elements
+	 * @param im
+	 *            imaginary parts, at least N elements
+	 * @param inverse
+	 *            false for exp(-i ...), true for exp(+i ...). the inverse is
+	 *            not divided by N.
+	 * @param scratchRe
+	 *            at least {@link #getScratchLength()} elements
+	 * @param scratchIm
+	 *            at least {@link #getScratchLength()} elements
+	 */
+	public void transform(double[] re, double[] im, boolean inverse, double[] scratchRe, double[] scratchIm) {
+		if (this.reversed != null) {
+			this.transformRadix2(re, im, inverse);
+		} else if (inverse) {
+			/** the inverse is the conjugate of the forward of the conjugate */
+			conjugate(im, this.length);
+			this.transformBluestein(re, im, scratchRe, scratchIm);
+			conjugate(im, this.length);
+		} else {
+			this.transformBluestein(re, im, scratchRe, scratchIm);
+		}
+	}
+
+	private void transformRadix2(double[] re, double[] im, boolean inverse) {
+		int n = this.length;
+		for (int i = 0; i < n; i++) {
+			int j = this.reversed[i];
+			if (j > i) {
+				double t = re[i];
+				re[i] = re[j];
+				re[j] = t;
+				t = im[i];
+				im[i] = im[j];
+				im[j] = t;
+			}
+		}
+
+		double sign = inverse ? 1.0d : -1.0d;
+		for (int size = 2; size <= n; size *= 2) {
+			int half = size / 2;
+			int step = n / size;
+			for (int start = 0; start < n; start += size) {
+				for (int k = 0; k < half; k++) {
+					double wr = this.cos[k * step];
+					double wi = sign * this.sin[k * step];
+					int a = start + k;
+					int b = a + half;
+					double tr = re[b] * wr - im[b] * wi;
+					double ti = re[b] * wi + im[b] * wr;
+					re[b] = re[a] - tr;
+					im[b] = im[a] - ti;
+					re[a] += tr;
+					im[a] += ti;
+				}
+			}
+		}
+	}
+
+	private void transformBluestein(double[] re, double[] im, double[] aRe, double[] aIm) {
+		int n = this.length;
+		int m = this.convolution.getLength();
+
+		/** a[k] = x[k] * w[k], zero padded */
+		for (int k = 0; k < n; k++) {
+			aRe[k] = re[k] * this.chirpRe[k] - im[k] * this.chirpIm[k];
+			aIm[k] = re[k] * this.chirpIm[k] + im[k] * this.chirpRe[k];
+		}
+		for (int k = n; k < m; k++) {
+			aRe[k] = 0.0d;
+			aIm[k] = 0.0d;
+		}
+
+		/** convolution with the conjugated chirp */
+		this.convolution.transform(aRe, aIm, false);
+		for (int k = 0; k < m; k++) {
+			double r = aRe[k] * this.kernelRe[k] - aIm[k] * this.kernelIm[k];
+			aIm[k] = aRe[k] * this.kernelIm[k] + aIm[k] * this.kernelRe[k];
+			aRe[k] = r;
+		}
+		this.convolution.transform(aRe, aIm, true);
+
+		/** X[k] = w[k] * c[k] / M */
+		for (int k = 0; k < n; k++) {
+			double cr = aRe[k] / m;
+			double ci = aIm[k] / m;
+			re[k] = cr * this.chirpRe[k] - ci * this.chirpIm[k];
+			im[k] = cr * this.chirpIm[k] + ci * this.chirpRe[k];
+		}
+	}
+
+	private static void conjugate(double[] im, int length) {
+		for (int k = 0; k < length; k++) {
+			im[k] = -im[k];
+		}
+	}
+
+	private static boolean isPowerOfTwo(int n) {
+		return (n & (n - 1)) == 0;
+	}
+}
@@ -0,0 +1,184 @@
+/**
+ *    Copyright (C) 2015  Peter Plaimer <dct-tool@tk.jku.at>
+ *
+ *    This file is part of the program
+ *    InterActive Image Processing / Discrete Cosine Transformation (DCT) 
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cx.uni.jk.mms.iaip.dct;
+
+/**
+ * A pure Java {@link DctEngine} for mats of any size, including odd and prime
+ * widths and heights, in O(N log N) per line.
+ * 
+ * Each line is reordered after Makhoul (even samples ascending, odd samples
+ * descending), which turns the DCT-II of length N into one complex
+ * {@link Fft} of length N followed by a twiddle of exp(-i pi k / 2N). The
+ * DCT-III (IDCT) runs the same steps backwards.
+ */
+public class FftDctEngine extends AbstractDctEngine {
+
+	@Override
+	public boolean supports(int rows, int cols) {
+		return rows > 0 && cols > 0;
+	}
+
+	@Override
+	public boolean supportsOddSizes() {
+		return true;
+	}
+
+	@Override
+	public DctPlan createPlan(int rows, int cols, boolean inverse) {
+		return new FftDctPlan(this, rows, cols, inverse);
+	}
+
+	/**
+	 * one {@link LinePlan} for the rows and one for the columns.
+	 */
+	private static class FftDctPlan extends SeparableDctPlan<Scratch> {
+		private final LinePlan rowsLine;
+		private final LinePlan colsLine;
+
+		FftDctPlan(DctEngine engine, int rows, int cols, boolean inverse) {
+			super(engine, rows, cols, inverse);
+			this.rowsLine = new LinePlan(rows);
+			this.colsLine = rows == cols ? this.rowsLine : new LinePlan(cols);
+		}
+
+		@Override
+		protected Scratch createScratch() {
+			return new Scratch(Math.max(this.getRows(), this.getCols()),
+					Math.max(this.rowsLine.fft.getScratchLength(), this.colsLine.fft.getScratchLength()));
+		}
+
+		@Override
+		protected void transformLine(float[] line, int length, Scratch scratch) {
+			(length == this.getCols() ? this.colsLine : this.rowsLine).transform(line, this.isInverse(), scratch);
+		}
+	}
+
+	/**
+	 * complex buffers of one thread
+	 */
+	private static class Scratch {
+		final double[] re;
+		final double[] im;
+		final double[] fftRe;
+		final double[] fftIm;
+
+		Scratch(int length, int fftLength) {
+			this.re = new double[length];
+			this.im = new double[length];
+			this.fftRe = new double[fftLength];
+			this.fftIm = new double[fftLength];
+		}
+	}
+
+	/**
+	 * FFT and twiddle factors for one line length
+	 */
+	private static class LinePlan {
+		private final int length;
+		private final Fft fft;
+		/** exp(-i pi k / 2N) */
+		private final double[] twiddleRe;
+		private final double[] twiddleIm;
+		/** orthonormal scale factors */
+		private final double scaleDc;
+		private final double scaleAc;
+
+		LinePlan(int length) {
+			this.length = length;
+			this.fft = new Fft(length);
+			this.twiddleRe = new double[length];
+			this.twiddleIm = new double[length];
+			for (int k = 0; k < length; k++) {
+				this.twiddleRe[k] = Math.cos(Math.PI * k / (2.0d * length));
+				this.twiddleIm[k] = -Math.sin(Math.PI * k / (2.0d * length));
+			}
+			this.scaleDc = Math.sqrt(1.0d / length);
+			this.scaleAc = Math.sqrt(2.0d / length);
+		}
+
+		/**
+		 * orthonormal DCT or IDCT of line in place.
+		 */
+		void transform(float[] line, boolean inverse, Scratch scratch) {
+			if (inverse) {
+				this.inverse(line, scratch);
+			} else {
+				this.forward(line, scratch);
+			}
+		}
+
+		private void forward(float[] line, Scratch scratch) {
+			int n = this.length;
+			double[] re = scratch.re;
+			double[] im = scratch.im;
+
+			/** v[k] = x[2k], v[N - 1 - k] = x[2k + 1] */
+			for (int k = 0; 2 * k < n; k++) {
+				re[k] = line[2 * k];
+			}
+			for (int k = 0; 2 * k + 1 < n; k++) {
+				re[n - 1 - k] = line[2 * k + 1];
+			}
+			for (int k = 0; k < n; k++) {
+				im[k] = 0.0d;
+			}
+
+			this.fft.transform(re, im, false, scratch.fftRe, scratch.fftIm);
+
+			/** X[k] = Re(exp(-i pi k / 2N) * V[k]) */
+			for (int k = 0; k < n; k++) {
+				double x = re[k] * this.twiddleRe[k] - im[k] * this.twiddleIm[k];
+				line[k] = (float) (x * (k == 0 ? this.scaleDc : this.scaleAc));
+			}
+		}
+
+		private void inverse(float[] line, Scratch scratch) {
+			int n = this.length;
+			double[] re = scratch.re;
+			double[] im = scratch.im;
+
+			/** V[k] = exp(i pi k / 2N) * (X[k] - i X[N - k]), X[N] = 0 */
+			for (int k = 0; k < n; k++) {
+				double x = line[k] / (k == 0 ? this.scaleDc : this.scaleAc);
+				double y = k == 0 ? 0.0d : line[n - k] / this.scaleAc;
+				double cr = this.twiddleRe[k];
+				double ci = -this.twiddleIm[k];
+				re[k] = cr * x + ci * y;
+				im[k] = ci * x - cr * y;
+			}
+
+			this.fft.transform(re, im, true, scratch.fftRe, scratch.fftIm);
+
+			/** x[2k] = v[k], x[2k + 1] = v[N - 1 - k] */
+			for (int k = 0; 2 * k < n; k++) {
+				line[2 * k] = (float) (re[k] / n);
+			}
+			for (int k = 0; 2 * k + 1 < n; k++) {
+				line[2 * k + 1] = (float) (re[n - 1 - k] / n);
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "Java FFT DCT, any size";
+	}
+}
@@ -0,0 +1,165 @@
+/**
+ *    Copyright (C) 2015  Peter Plaimer <dct-tool@tk.jku.at>
+ *
+ *    This file is part of the program
+ *    InterActive Image Processing / Discrete Cosine Transformation (DCT) 
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cx.uni.jk.mms.iaip.dct;
+
+/**
+ * Updates a 2D DCT or IDCT of a matrix after a rectangular area of the input
+ * matrix changed, without transforming the whole matrix again.
+ * 
+ * Both transforms are linear and separable, so the change of the output caused
+ * by a change D of the input inside the area is
+ * 
+ * forward: dF[u][v] = sum over i, j of Cr[u][y+i] * D[i][j] * Cc[v][x+j]
+ * 
+ * inverse: df[m][n] = sum over i, j of Cr[y+i][m] * D[i][j] * Cc[x+j][n]
+ * 
+ * with Cr and Cc being the row and column {@link CosineBasis}. This is a sum
+ * of min(width, height) outer products of basis vectors, so the cost is
+ * O(rows * cols * min(width, height)) instead of a full transform. A single
+ * changed value is just one scaled basis image.
+ */
+public class IncrementalDct {
+
+	private IncrementalDct() {
+		/** static methods only */
+	}
+
+	/**
+	 * adds the DCT of delta to coefficients.
+	 * 
+	 * @param rowBasis
+	 *            basis of length rows
+	 * @param colBasis
+	 *            basis of length cols
+	 * @param delta
+	 *            change of the samples, row major, height x width
+	 * @param x
+	 *            left column of the changed area
+	 * @param y
+	 *            top row of the changed area
+	 * @param width
+	 * @param height
+	 * @param coefficients
+	 *            the DCT of the samples before the change, row major, rows x
+	 *            cols. updated in place.
+	 */
+	public static void forward(CosineBasis rowBasis, CosineBasis colBasis, float[] delta, int x, int y, int width, int height,
+			float[] coefficients) {
+		update(rowBasis, colBasis, false, delta, x, y, width, height, coefficients);
+	}
+
+	/**
+	 * adds the IDCT of delta to samples.
+	 * 
+	 * @param rowBasis
+	 *            basis of length rows
+	 * @param colBasis
+	 *            basis of length cols
+	 * @param delta
+	 *            change of the coefficients, row major, height x width
+	 * @param x
+	 *            left column of the changed area
+	 * @param y
+	 *            top row of the changed area
+	 * @param width
+	 * @param height
+	 * @param samples
+	 *            the IDCT of the coefficients before the change, row major,
+	 *            rows x cols. updated in place.
+	 */
+	public static void inverse(CosineBasis rowBasis, CosineBasis colBasis, float[] delta, int x, int y, int width, int height,
+			float[] samples) {
+		update(rowBasis, colBasis, true, delta, x, y, width, height, samples);
+	}
+
+	private static void update(CosineBasis rowBasis, CosineBasis colBasis, boolean inverse, float[] delta, int x, int y,
+			int width, int height, float[] output) {
+		int rows = rowBasis.getLength();
+		int cols = colBasis.getLength();
+		float[] rowVector = new float[rows];
+		float[] colVector = new float[cols];
+
+		if (width <= height) {
+			/** partial[u][j] = sum over i of rowVector(y+i)[u] * delta[i][j] */
+			float[] partial = new float[rows * width];
+			for (int i = 0; i < height; i++) {
+				fillVector(rowBasis, inverse, y + i, rowVector);
+				for (int u = 0; u < rows; u++) {
+					float c = rowVector[u];
+					int p = u * width;
+					int d = i * width;
+					for (int j = 0; j < width; j++) {
+						partial[p + j] += c * delta[d + j];
+					}
+				}
+			}
+
+			/** one outer product per changed column */
+			for (int j = 0; j < width; j++) {
+				fillVector(colBasis, inverse, x + j, colVector);
+				for (int u = 0; u < rows; u++) {
+					axpy(partial[u * width + j], colVector, 0, output, u * cols, cols);
+				}
+			}
+		} else {
+			/** partial[i][v] = sum over j of delta[i][j] * colVector(x+j)[v] */
+			float[] partial = new float[height * cols];
+			for (int j = 0; j < width; j++) {
+				fillVector(colBasis, inverse, x + j, colVector);
+				for (int i = 0; i < height; i++) {
+					axpy(delta[i * width + j], colVector, 0, partial, i * cols, cols);
+				}
+			}
+
+			/** one outer product per changed row */
+			for (int i = 0; i < height; i++) {
+				fillVector(rowBasis, inverse, y + i, rowVector);
+				for (int u = 0; u < rows; u++) {
+					axpy(rowVector[u], partial, i * cols, output, u * cols, cols);
+				}
+			}
+		}
+	}
+
+	/**
+	 * the forward transform spreads a changed sample over all frequencies, the
+	 * inverse transform spreads a changed coefficient over all samples.
+	 */
+	private static void fillVector(CosineBasis basis, boolean inverse, int index, float[] dst) {
+		if (inverse) {
+			basis.fillFrequencyVector(index, dst);
+		} else {
+			basis.fillSampleVector(index, dst);
+		}
+	}
+
+	/**
+	 * dst[dstOffset + k] += a * src[srcOffset + k] for k in [0, length)
+	 */
+	private static void axpy(float a, float[] src, int srcOffset, float[] dst, int dstOffset, int length) {
+		if (a == 0.0f) {
+			return;
+		}
+		for (int k = 0; k < length; k++) {
+			dst[dstOffset + k] += a * src[srcOffset + k];
+		}
+	}
+}
@@ -0,0 +1,549 @@
+/**
+ *    Copyright (C) 2015  Peter Plaimer <dct-tool@tk.jku.at>
+ *
+ *    This file is part of the program
+ *    InterActive Image Processing / Discrete Cosine Transformation (DCT) 
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cx.uni.jk.mms.iaip.dct;
+
+/**
+ * A pure Java {@link DctEngine} for small mats and blocks.
+ * 
+ * Rows and columns of length 8 are transformed by the scaled AAN (Arai, Agui,
+ * Nakajima) algorithm with 5 multiplications, plus one scaling per value,
+ * which is the fast DCT of most JPEG codecs. Length 16 is split into two
+ * length 8 AAN transforms by one even/odd step of Lee's algorithm. Any other
+ * length up to {@link #MAX_MATRIX_LENGTH} is transformed by multiplication
+ * with the DCT matrix.
+ * 
+ * All the work is done on float[] data, so a mat is copied only once in each
+ * direction, regardless of the number of blocks.
+ * 
+ * In 8 x 8 block mode, each row of blocks is transformed as a whole: the
+ * butterflies run across all columns of the 8 image rows at once, which are
+ * contiguous, independent lanes that the JIT compiles to SIMD instructions.
+ * The row pass is the same column pass between two in place transpositions
+ * of each block.
+ */
+public class JavaDctEngine extends AbstractDctEngine {
+	/** longest line length transformed in O(N^2) by matrix multiplication */
+	public static final int MAX_MATRIX_LENGTH = 64;
+
+	private static final float C4 = (float) Math.cos(4.0d * Math.PI / 16.0d);
+	private static final float R2 = (float) Math.sqrt(2.0d);
+
+	/** AAN output at index k divided by the orthonormal DCT at index k */
+	private static final float[] AAN_SCALE_8 = new float[8];
+	/** orthonormal DCT at index k multiplied into the AAN input at index k */
+	private static final float[] AAN_DESCALE_8 = new float[8];
+
+	/** AAN output of length 8 to the unnormalized DCT, 1 / (2 cos(k pi / 16)) */
+	private static final float[] AAN_TO_UNNORMALIZED_8 = new float[8];
+	/** unnormalized DCT of length 8 to the AAN input, cos(k pi / 16) */
+	private static final float[] UNNORMALIZED_TO_AAN_8 = new float[8];
+	/** 1 / (2 cos(pi (2n + 1) / 32)), the odd part factors of Lee's step */
+	private static final float[] LEE_FACTORS_16 = new float[8];
+	/** unnormalized to orthonormal DCT of length 16 */
+	private static final float[] ORTHONORMAL_16 = new float[16];
+
+	static {
+		/**
+		 * the AAN output is the orthonormal DCT scaled by sqrt(8) * s(k) with
+		 * s(0) = 1, s(k) = sqrt(2) cos(k pi / 16)
+		 */
+		for (int k = 0; k < 8; k++) {
+			double s = k == 0 ? 1.0d : Math.sqrt(2.0d) * Math.cos(k * Math.PI / 16.0d);
+			AAN_SCALE_8[k] = (float) (1.0d / (Math.sqrt(8.0d) * s));
+			AAN_DESCALE_8[k] = (float) (s / Math.sqrt(8.0d));
+		}
+
+		/**
+		 * Lee's step works on the unnormalized DCT X[k] = sum x[n] cos(pi (2n
+		 * + 1) k / 2N). the AAN output is X[k] * 2 cos(k pi / 16) for k > 0.
+		 */
+		for (int k = 0; k < 8; k++) {
+			double c = k == 0 ? 1.0d : Math.cos(k * Math.PI / 16.0d);
+			AAN_TO_UNNORMALIZED_8[k] = (float) (k == 0 ? 1.0d : 1.0d / (2.0d * c));
+			UNNORMALIZED_TO_AAN_8[k] = (float) c;
+		}
+		for (int n = 0; n < 8; n++) {
+			LEE_FACTORS_16[n] = (float) (1.0d / (2.0d * Math.cos(Math.PI * (2 * n + 1) / 32.0d)));
+		}
+		for (int k = 0; k < 16; k++) {
+			ORTHONORMAL_16[k] = (float) (k == 0 ? Math.sqrt(1.0d / 16.0d) : Math.sqrt(2.0d / 16.0d));
+		}
+	}
+
+	@Override
+	public boolean supports(int rows, int cols) {
+		return rows > 0 && cols > 0 && rows <= MAX_MATRIX_LENGTH && cols <= MAX_MATRIX_LENGTH;
+	}
+
+	/**
+	 * false, as mats longer than {@link #MAX_MATRIX_LENGTH} are transformed by
+	 * the default engine, which needs even sizes
+	 */
+	@Override
+	public boolean supportsOddSizes() {
+		return false;
+	}
+
+	@Override
+	public DctPlan createPlan(int rows, int cols, boolean inverse) {
+		return new JavaDctPlan(this, rows, cols, inverse);
+	}
+
+	/**
+	 * transforms rows of 8 x 8 blocks by the lane wise kernels, the remaining
+	 * narrower blocks at the right and bottom border by plans.
+	 */
+	@Override
+	protected void transformBlockRows(float[] data, int width, int height, int blockSize, boolean inverse, int fromBlockRow,
+			int toBlockRow) {
+		if (blockSize != 8) {
+			super.transformBlockRows(data, width, height, blockSize, inverse, fromBlockRow, toBlockRow);
+			return;
+		}
+		int lanes = width - width % 8;
+		for (int blockRow = fromBlockRow; blockRow < toBlockRow; blockRow++) {
+			int row = blockRow * 8;
+			if (row + 8 > height || lanes == 0) {
+				super.transformBlockRows(data, width, height, blockSize, inverse, blockRow, blockRow + 1);
+				continue;
+			}
+			int offset = row * width;
+			if (inverse) {
+				idct8Lanes(data, offset, width, lanes);
+				transposeBlocks8(data, offset, width, lanes);
+				idct8Lanes(data, offset, width, lanes);
+			} else {
+				fdct8Lanes(data, offset, width, lanes);
+				transposeBlocks8(data, offset, width, lanes);
+				fdct8Lanes(data, offset, width, lanes);
+			}
+			transposeBlocks8(data, offset, width, lanes);
+			if (lanes < width) {
+				DctPlanCache.getPlan(this, 8, width - lanes, inverse).execute(data, offset + lanes, width);
+			}
+		}
+	}
+
+	/**
+	 * orthonormal DCT of length 8 in place.
+	 */
+	static void fdct8(float[] v, int o) {
+		fdct8Scaled(v, o);
+		for (int k = 0; k < 8; k++) {
+			v[o + k] *= AAN_SCALE_8[k];
+		}
+	}
+
+	/**
+	 * orthonormal IDCT of length 8 in place.
+	 */
+	static void idct8(float[] v, int o) {
+		for (int k = 0; k < 8; k++) {
+			v[o + k] *= AAN_DESCALE_8[k];
+		}
+		idct8Scaled(v, o);
+	}
+
+	/**
+	 * AAN forward DCT of length 8 in place, output scaled by sqrt(8) * s(k).
+	 */
+	private static void fdct8Scaled(float[] v, int o) {
+		float tmp0 = v[o] + v[o + 7];
+		float tmp7 = v[o] - v[o + 7];
+		float tmp1 = v[o + 1] + v[o + 6];
+		float tmp6 = v[o + 1] - v[o + 6];
+		float tmp2 = v[o + 2] + v[o + 5];
+		float tmp5 = v[o + 2] - v[o + 5];
+		float tmp3 = v[o + 3] + v[o + 4];
+		float tmp4 = v[o + 3] - v[o + 4];
+
+		/** even part */
+		float tmp10 = tmp0 + tmp3;
+		float tmp13 = tmp0 - tmp3;
+		float tmp11 = tmp1 + tmp2;
+		float tmp12 = tmp1 - tmp2;
+
+		v[o] = tmp10 + tmp11;
+		v[o + 4] = tmp10 - tmp11;
+
+		float z1 = (tmp12 + tmp13) * C4;
+		v[o + 2] = tmp13 + z1;
+		v[o + 6] = tmp13 - z1;
+
+		/** odd part */
+		tmp10 = tmp4 + tmp5;
+		tmp11 = tmp5 + tmp6;
+		tmp12 = tmp6 + tmp7;
+
+		float z5 = (tmp10 - tmp12) * 0.382683433f;
+		float z2 = 0.541196100f * tmp10 + z5;
+		float z4 = 1.306562965f * tmp12 + z5;
+		float z3 = tmp11 * C4;
+
+		float z11 = tmp7 + z3;
+		float z13 = tmp7 - z3;
+
+		v[o + 5] = z13 + z2;
+		v[o + 3] = z13 - z2;
+		v[o + 1] = z11 + z4;
+		v[o + 7] = z11 - z4;
+	}
+
+	/**
+	 * AAN inverse DCT of length 8 in place, input scaled by s(k) / sqrt(8).
+	 */
+	private static void idct8Scaled(float[] v, int o) {
+		/** even part */
+		float tmp10 = v[o] + v[o + 4];
+		float tmp11 = v[o] - v[o + 4];
+		float tmp13 = v[o + 2] + v[o + 6];
+		float tmp12 = (v[o + 2] - v[o + 6]) * R2 - tmp13;
+
+		float tmp0 = tmp10 + tmp13;
+		float tmp3 = tmp10 - tmp13;
+		float tmp1 = tmp11 + tmp12;
+		float tmp2 = tmp11 - tmp12;
+
+		/** odd part */
+		float z13 = v[o + 5] + v[o + 3];
+		float z10 = v[o + 5] - v[o + 3];
+		float z11 = v[o + 1] + v[o + 7];
+		float z12 = v[o + 1] - v[o + 7];
+
+		float tmp7 = z11 + z13;
+		tmp11 = (z11 - z13) * R2;
+
+		float z5 = (z10 + z12) * 1.847759065f;
+		tmp10 = 1.082392200f * z12 - z5;
+		tmp12 = -2.613125930f * z10 + z5;
+
+		float tmp6 = tmp12 - tmp7;
+		float tmp5 = tmp11 - tmp6;
+		float tmp4 = tmp10 + tmp5;
+
+		v[o] = tmp0 + tmp7;
+		v[o + 7] = tmp0 - tmp7;
+		v[o + 1] = tmp1 + tmp6;
+		v[o + 6] = tmp1 - tmp6;
+		v[o + 2] = tmp2 + tmp5;
+		v[o + 5] = tmp2 - tmp5;
+		v[o + 4] = tmp3 + tmp4;
+		v[o + 3] = tmp3 - tmp4;
+	}
+
+	/**
+	 * orthonormal DCT of length 8 down each of the columns offset to offset +
+	 * lanes - 1 of 8 rows in place. the same steps as
+	 * {@link #fdct8Scaled(float[], int)} plus scaling, one lane per loop
+	 * iteration.
+	 */
+	static void fdct8Lanes(float[] v, int offset, int stride, int lanes) {
+		final int o0 = offset;
+		final int o1 = o0 + stride;
+		final int o2 = o1 + stride;
+		final int o3 = o2 + stride;
+		final int o4 = o3 + stride;
+		final int o5 = o4 + stride;
+		final int o6 = o5 + stride;
+		final int o7 = o6 + stride;
+		final float s0 = AAN_SCALE_8[0];
+		final float s1 = AAN_SCALE_8[1];
+		final float s2 = AAN_SCALE_8[2];
+		final float s3 = AAN_SCALE_8[3];
+		final float s4 = AAN_SCALE_8[4];
+		final float s5 = AAN_SCALE_8[5];
+		final float s6 = AAN_SCALE_8[6];
+		final float s7 = AAN_SCALE_8[7];
+
+		for (int i = 0; i < lanes; i++) {
+			float x0 = v[o0 + i];
+			float x1 = v[o1 + i];
+			float x2 = v[o2 + i];
+			float x3 = v[o3 + i];
+			float x4 = v[o4 + i];
+			float x5 = v[o5 + i];
+			float x6 = v[o6 + i];
+			float x7 = v[o7 + i];
+
+			float tmp0 = x0 + x7;
+			float tmp7 = x0 - x7;
+			float tmp1 = x1 + x6;
+			float tmp6 = x1 - x6;
+			float tmp2 = x2 + x5;
+			float tmp5 = x2 - x5;
+			float tmp3 = x3 + x4;
+			float tmp4 = x3 - x4;
+
+			/** even part */
+			float tmp10 = tmp0 + tmp3;
+			float tmp13 = tmp0 - tmp3;
+			float tmp11 = tmp1 + tmp2;
+			float tmp12 = tmp1 - tmp2;
+			float z1 = (tmp12 + tmp13) * C4;
+
+			/** odd part */
+			float odd10 = tmp4 + tmp5;
+			float odd11 = tmp5 + tmp6;
+			float odd12 = tmp6 + tmp7;
+			float z5 = (odd10 - odd12) * 0.382683433f;
+			float z2 = 0.541196100f * odd10 + z5;
+			float z4 = 1.306562965f * odd12 + z5;
+			float z3 = odd11 * C4;
+			float z11 = tmp7 + z3;
+			float z13 = tmp7 - z3;
+
+			v[o0 + i] = (tmp10 + tmp11) * s0;
+			v[o4 + i] = (tmp10 - tmp11) * s4;
+			v[o2 + i] = (tmp13 + z1) * s2;
+			v[o6 + i] = (tmp13 - z1) * s6;
+			v[o5 + i] = (z13 + z2) * s5;
+			v[o3 + i] = (z13 - z2) * s3;
+			v[o1 + i] = (z11 + z4) * s1;
+			v[o7 + i] = (z11 - z4) * s7;
+		}
+	}
+
+	/**
+	 * orthonormal IDCT of length 8 down each of the columns offset to offset +
+	 * lanes - 1 of 8 rows in place. the same steps as
+	 * {@link #idct8Scaled(float[], int)} plus scaling, one lane per loop
+	 * iteration.
+	 */
+	static void idct8Lanes(float[] v, int offset, int stride, int lanes) {
+		final int o0 = offset;
+		final int o1 = o0 + stride;
+		final int o2 = o1 + stride;
+		final int o3 = o2 + stride;
+		final int o4 = o3 + stride;
+		final int o5 = o4 + stride;
+		final int o6 = o5 + stride;
+		final int o7 = o6 + stride;
+		final float s0 = AAN_DESCALE_8[0];
+		final float s1 = AAN_DESCALE_8[1];
+		final float s2 = AAN_DESCALE_8[2];
+		final float s3 = AAN_DESCALE_8[3];
+		final float s4 = AAN_DESCALE_8[4];
+		final float s5 = AAN_DESCALE_8[5];
+		final float s6 = AAN_DESCALE_8[6];
+		final float s7 = AAN_DESCALE_8[7];
+
+		for (int i = 0; i < lanes; i++) {
+			float x0 = v[o0 + i] * s0;
+			float x1 = v[o1 + i] * s1;
+			float x2 = v[o2 + i] * s2;
+			float x3 = v[o3 + i] * s3;
+			float x4 = v[o4 + i] * s4;
+			float x5 = v[o5 + i] * s5;
+			float x6 = v[o6 + i] * s6;
+			float x7 = v[o7 + i] * s7;
+
+			/** even part */
+			float tmp10 = x0 + x4;
+			float tmp11 = x0 - x4;
+			float tmp13 = x2 + x6;
+			float tmp12 = (x2 - x6) * R2 - tmp13;
+			float tmp0 = tmp10 + tmp13;
+			float tmp3 = tmp10 - tmp13;
+			float tmp1 = tmp11 + tmp12;
+			float tmp2 = tmp11 - tmp12;
+
+			/** odd part */
+			float z13 = x5 + x3;
+			float z10 = x5 - x3;
+			float z11 = x1 + x7;
+			float z12 = x1 - x7;
+			float tmp7 = z11 + z13;
+			float odd11 = (z11 - z13) * R2;
+			float z5 = (z10 + z12) * 1.847759065f;
+			float odd10 = 1.082392200f * z12 - z5;
+			float odd12 = -2.613125930f * z10 + z5;
+			float tmp6 = odd12 - tmp7;
+			float tmp5 = odd11 - tmp6;
+			float tmp4 = odd10 + tmp5;
+
+			v[o0 + i] = tmp0 + tmp7;
+			v[o7 + i] = tmp0 - tmp7;
+			v[o1 + i] = tmp1 + tmp6;
+			v[o6 + i] = tmp1 - tmp6;
+			v[o2 + i] = tmp2 + tmp5;
+			v[o5 + i] = tmp2 - tmp5;
+			v[o4 + i] = tmp3 + tmp4;
+			v[o3 + i] = tmp3 - tmp4;
+		}
+	}
+
+	/**
+	 * transposes each 8 x 8 block of a row of blocks in place.
+	 * 
+	 * @param lanes
+	 *            width of the row of blocks, a multiple of 8
+	 */
+	static void transposeBlocks8(float[] v, int offset, int stride, int lanes) {
+		for (int col = 0; col < lanes; col += 8) {
+			int block = offset + col;
+			for (int row = 1; row < 8; row++) {
+				int r = block + row * stride;
+				for (int c = 0; c < row; c++) {
+					int a = r + c;
+					int b = block + c * stride + row;
+					float t = v[a];
+					v[a] = v[b];
+					v[b] = t;
+				}
+			}
+		}
+	}
+
+	/**
+	 * orthonormal DCT of length 16 in place. Lee's step: the even outputs are
+	 * the DCT of the folded sums, the odd outputs are pairwise sums of the DCT
+	 * of the weighted folded differences.
+	 */
+	private static void fdct16(float[] v, float[] scratch) {
+		for (int n = 0; n < 8; n++) {
+			float a = v[n];
+			float b = v[15 - n];
+			scratch[n] = a + b;
+			scratch[8 + n] = (a - b) * LEE_FACTORS_16[n];
+		}
+		fdct8Scaled(scratch, 0);
+		fdct8Scaled(scratch, 8);
+		for (int k = 0; k < 8; k++) {
+			scratch[k] *= AAN_TO_UNNORMALIZED_8[k];
+			scratch[8 + k] *= AAN_TO_UNNORMALIZED_8[k];
+		}
+
+		for (int k = 0; k < 8; k++) {
+			v[2 * k] = scratch[k] * ORTHONORMAL_16[2 * k];
+			float odd = scratch[8 + k] + (k < 7 ? scratch[9 + k] : 0.0f);
+			v[2 * k + 1] = odd * ORTHONORMAL_16[2 * k + 1];
+		}
+	}
+
+	/**
+	 * orthonormal IDCT of length 16 in place, the transposed steps of
+	 * {@link #fdct16(float[], float[])}.
+	 */
+	private static void idct16(float[] v, float[] scratch) {
+		for (int k = 0; k < 8; k++) {
+			float even = v[2 * k] * ORTHONORMAL_16[2 * k];
+			float odd = v[2 * k + 1] * ORTHONORMAL_16[2 * k + 1] + (k > 0 ? v[2 * k - 1] * ORTHONORMAL_16[2 * k - 1] : 0.0f);
+			scratch[k] = even * UNNORMALIZED_TO_AAN_8[k];
+			scratch[8 + k] = odd * UNNORMALIZED_TO_AAN_8[k];
+		}
+		idct8Scaled(scratch, 0);
+		idct8Scaled(scratch, 8);
+
+		for (int n = 0; n < 8; n++) {
+			float g = scratch[n];
+			float h = scratch[8 + n] * LEE_FACTORS_16[n];
+			v[n] = g + h;
+			v[15 - n] = g - h;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "Java fast DCT";
+	}
+
+	/**
+	 * holds the DCT matrices of lengths without fast algorithm, the scratch is
+	 * one line.
+	 */
+	private static class JavaDctPlan extends SeparableDctPlan<float[]> {
+		/** row k holds basis function k, null for lengths with fast algorithm */
+		private final float[] rowsMatrix;
+		private final float[] colsMatrix;
+
+		JavaDctPlan(DctEngine engine, int rows, int cols, boolean inverse) {
+			super(engine, rows, cols, inverse);
+			this.rowsMatrix = createMatrix(rows);
+			this.colsMatrix = rows == cols ? this.rowsMatrix : createMatrix(cols);
+		}
+
+		@Override
+		protected float[] createScratch() {
+			return new float[Math.max(this.getRows(), this.getCols())];
+		}
+
+		@Override
+		protected void transformLine(float[] line, int length, float[] scratch) {
+			boolean inverse = this.isInverse();
+			switch (length) {
+			case 1:
+				/** the 1 point DCT is the identity */
+				break;
+			case 8:
+				if (inverse) {
+					idct8(line, 0);
+				} else {
+					fdct8(line, 0);
+				}
+				break;
+			case 16:
+				if (inverse) {
+					idct16(line, scratch);
+				} else {
+					fdct16(line, scratch);
+				}
+				break;
+			default:
+				multiply(length == this.getCols() ? this.colsMatrix : this.rowsMatrix, line, length, inverse, scratch);
+			}
+		}
+
+		private static float[] createMatrix(int length) {
+			if (length == 1 || length == 8 || length == 16) {
+				return null;
+			}
+			CosineBasis basis = CosineBasis.forLength(length);
+			float[] matrix = new float[length * length];
+			float[] vector = new float[length];
+			for (int k = 0; k < length; k++) {
+				basis.fillFrequencyVector(k, vector);
+				System.arraycopy(vector, 0, matrix, k * length, length);
+			}
+			return matrix;
+		}
+
+		/**
+		 * orthonormal DCT or IDCT of any length in place, O(N^2).
+		 */
+		private static void multiply(float[] matrix, float[] line, int length, boolean inverse, float[] scratch) {
+			for (int i = 0; i < length; i++) {
+				float sum = 0.0f;
+				if (inverse) {
+					for (int k = 0; k < length; k++) {
+						sum += matrix[k * length + i] * line[k];
+					}
+				} else {
+					int row = i * length;
+					for (int n = 0; n < length; n++) {
+						sum += matrix[row + n] * line[n];
+					}
+				}
+				scratch[i] = sum;
+			}
+			System.arraycopy(scratch, 0, line, 0, length);
+		}
+	}
+}
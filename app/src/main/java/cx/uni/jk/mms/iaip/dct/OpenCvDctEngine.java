@@ -0,0 +1,199 @@
+/**
+ *    Copyright (C) 2015  Peter Plaimer <dct-tool@tk.jku.at>
+ *
+ *    This file is part of the program
+ *    InterActive Image Processing / Discrete Cosine Transformation (DCT) 
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cx.uni.jk.mms.iaip.dct;
+
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+
+import cx.uni.jk.mms.iaip.mat.MatModel;
+import cx.uni.jk.mms.iaip.mat.ParallelRows;
+
+/**
+ * A {@link DctEngine} calling OpenCV's native <code>Core.dct()</code> and
+ * <code>Core.idct()</code>, which only support even sizes.
+ */
+public class OpenCvDctEngine extends AbstractDctEngine {
+
+	@Override
+	public boolean supports(int rows, int cols) {
+		return rows > 0 && cols > 0 && rows % 2 == 0 && cols % 2 == 0;
+	}
+
+	@Override
+	public boolean supportsOddSizes() {
+		return false;
+	}
+
+	/**
+	 * transforms each block as a sub mat, without copying to Java, in parallel
+	 * rows of blocks if the area is large.
+	 */
+	@Override
+	public void transformBlocks(final Mat src, final Mat dst, final Rect area, final int blockSize, final boolean inverse) {
+		int blockRows = (area.height + blockSize - 1) / blockSize;
+		if (ParallelRows.isParallel(area.height, area.width)) {
+			ParallelRows.forEachRowRange(blockRows, blockSize * area.width, new ParallelRows.RowRangeAction() {
+				@Override
+				public void run(int fromBlockRow, int toBlockRow) {
+					OpenCvDctEngine.this.transformBlockRows(src, dst, area, blockSize, inverse, fromBlockRow, toBlockRow);
+				}
+			});
+		} else {
+			this.transformBlockRows(src, dst, area, blockSize, inverse, 0, blockRows);
+		}
+	}
+
+	private void transformBlockRows(Mat src, Mat dst, Rect area, int blockSize, boolean inverse, int fromBlockRow, int toBlockRow) {
+		int colEnd = area.x + area.width;
+		int rowEnd = Math.min(area.y + area.height, area.y + toBlockRow * blockSize);
+		for (int row = area.y + fromBlockRow * blockSize; row < rowEnd; row += blockSize) {
+			for (int col = area.x; col < colEnd; col += blockSize) {
+				Rect block = new Rect(col, row, Math.min(blockSize, colEnd - col), Math.min(blockSize, area.y + area.height - row));
+				this.transform(src.submat(block), dst.submat(block), inverse);
+			}
+		}
+	}
+
+	@Override
+	public DctPlan createPlan(int rows, int cols, boolean inverse) {
+		return new OpenCvDctPlan(this, rows, cols, inverse);
+	}
+
+	@Override
+	public String toString() {
+		return "OpenCV native DCT";
+	}
+
+	/**
+	 * OpenCV prepares its tables per call, so there is nothing to keep but
+	 * mats for transforming float[] data and for the transposed columns.
+	 * 
+	 * Large mats are transformed row wise by <code>DCT_ROWS</code> on ranges
+	 * of rows in parallel, then transposed so that the columns are transformed
+	 * the same way.
+	 */
+	private static class OpenCvDctPlan extends DctPlan {
+		private final ScratchPool<Mat> mats = new MatPool(false);
+		private final ScratchPool<Mat> transposed = new MatPool(true);
+
+		OpenCvDctPlan(DctEngine engine, int rows, int cols, boolean inverse) {
+			super(engine, rows, cols, inverse);
+		}
+
+		@Override
+		public void execute(Mat src, Mat dst) {
+			if (ParallelRows.isParallel(this.getRows(), this.getCols())) {
+				this.executeParallel(src, dst);
+			} else {
+				this.dct(src, dst, 0);
+			}
+		}
+
+		private void executeParallel(final Mat src, final Mat dst) {
+			int rows = this.getRows();
+			int cols = this.getCols();
+			final Mat transposedMat = this.transposed.take();
+			dst.create(rows, cols, MatModel.MAT_TYPE);
+			try {
+				ParallelRows.forEachRowRange(rows, cols, new ParallelRows.RowRangeAction() {
+					@Override
+					public void run(int fromRow, int toRow) {
+						OpenCvDctPlan.this.dct(src.rowRange(fromRow, toRow), dst.rowRange(fromRow, toRow), Core.DCT_ROWS);
+						Core.transpose(dst.rowRange(fromRow, toRow), transposedMat.colRange(fromRow, toRow));
+					}
+				});
+				ParallelRows.forEachRowRange(cols, rows, new ParallelRows.RowRangeAction() {
+					@Override
+					public void run(int fromCol, int toCol) {
+						Mat columns = transposedMat.rowRange(fromCol, toCol);
+						OpenCvDctPlan.this.dct(columns, columns, Core.DCT_ROWS);
+						Core.transpose(columns, dst.colRange(fromCol, toCol));
+					}
+				});
+			} finally {
+				this.transposed.give(transposedMat);
+			}
+		}
+
+		private void dct(Mat src, Mat dst, int flags) {
+			if (this.isInverse()) {
+				Core.idct(src, dst, flags);
+			} else {
+				Core.dct(src, dst, flags);
+			}
+		}
+
+		@Override
+		public void execute(float[] data, int offset, int stride) {
+			Mat buffer = this.mats.take();
+			try {
+				int cols = this.getCols();
+				float[] line = new float[cols];
+				for (int row = 0; row < this.getRows(); row++) {
+					System.arraycopy(data, offset + row * stride, line, 0, cols);
+					buffer.put(row, 0, line);
+				}
+				this.execute(buffer, buffer);
+				for (int row = 0; row < this.getRows(); row++) {
+					buffer.get(row, 0, line);
+					System.arraycopy(line, 0, data, offset + row * stride, cols);
+				}
+			} finally {
+				this.mats.give(buffer);
+			}
+		}
+
+		/**
+		 * frees the native memory of the mats, which the garbage collector
+		 * would only do in the finalizer
+		 */
+		@Override
+		public void release() {
+			super.release();
+			this.mats.release();
+			this.transposed.release();
+		}
+
+		/**
+		 * mats of the size of the plan, or of its transposed size
+		 */
+		private class MatPool extends ScratchPool<Mat> {
+			private final boolean transpose;
+
+			MatPool(boolean transpose) {
+				this.transpose = transpose;
+			}
+
+			@Override
+			protected Mat create() {
+				int rows = OpenCvDctPlan.this.getRows();
+				int cols = OpenCvDctPlan.this.getCols();
+				return this.transpose ? new Mat(cols, rows, MatModel.MAT_TYPE) : new Mat(rows, cols, MatModel.MAT_TYPE);
+			}
+
+			@Override
+			protected void dispose(Mat mat) {
+				mat.release();
+			}
+		}
+	}
+}
@@ -0,0 +1,80 @@
+/**
+ *    Copyright (C) 2015  Peter Plaimer <dct-tool@tk.jku.at>
+ *
+ *    This file is part of the program
+ *    InterActive Image Processing / Discrete Cosine Transformation (DCT) 
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cx.uni.jk.mms.iaip.dct;
+
+import cx.uni.jk.mms.iaip.mat.ParallelRows;
+import cx.uni.jk.mms.iaip.mat.ParallelRows.RowRangeAction;
+
+/**
+ * Transposes between the row and column passes of large DCTs in cache sized
+ * tiles, so that the column pass also reads contiguous memory. The passes
+ * themselves run on all cores by {@link ParallelRows}.
+ */
+public final class ParallelDct {
+
+	/** edge length of one tile of the transpose, 32 x 32 floats are 4 KiB */
+	private static final int TILE = 32;
+
+	private ParallelDct() {
+		/** static methods only */
+	}
+
+	/**
+	 * transposes the rows x cols matrix inside src into dst, tile by tile and in
+	 * parallel.
+	 * 
+	 * @param src
+	 * @param srcOffset
+	 *            index of the top left value of src
+	 * @param srcStride
+	 *            distance between two rows of src
+	 * @param dst
+	 * @param dstOffset
+	 *            index of the top left value of dst
+	 * @param dstStride
+	 *            distance between two rows of dst, at least rows
+	 * @param rows
+	 * @param cols
+	 */
+	public static void transpose(final float[] src, final int srcOffset, final int srcStride, final float[] dst, final int dstOffset,
+			final int dstStride, final int rows, final int cols) {
+		int tileRows = (rows + TILE - 1) / TILE;
+		ParallelRows.forEachRowRange(tileRows, TILE * cols, new RowRangeAction() {
+			@Override
+			public void run(int fromTileRow, int toTileRow) {
+				int rowEnd = Math.min(rows, toTileRow * TILE);
+				for (int row0 = fromTileRow * TILE; row0 < rowEnd; row0 += TILE) {
+					int row1 = Math.min(row0 + TILE, rows);
+					for (int col0 = 0; col0 < cols; col0 += TILE) {
+						int col1 = Math.min(col0 + TILE, cols);
+						for (int row = row0; row < row1; row++) {
+							int s = srcOffset + row * srcStride;
+							int d = dstOffset + row;
+							for (int col = col0; col < col1; col++) {
+								dst[d + col * dstStride] = src[s + col];
+							}
+						}
+					}
+				}
+			}
+		});
+	}
+}
@@ -0,0 +1,99 @@
+/**
+ *    Copyright (C) 2015  Peter Plaimer <dct-tool@tk.jku.at>
+ *
+ *    This file is part of the program
+ *    InterActive Image Processing / Discrete Cosine Transformation (DCT) 
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cx.uni.jk.mms.iaip.dct;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Scratch space of a {@link DctPlan}, taken by a thread for one execution and
+ * given back afterwards, so that there are as many as threads execute the
+ * plan at once.
+ * 
+ * Unlike a {@link ThreadLocal}, which stays in every thread that used it, all
+ * of them are dropped by {@link #release()} when the plan is evicted.
+ * 
+ * @param <T>
+ *            the type of the scratch space
+ */
+abstract class ScratchPool<T> {
+	private final ArrayDeque<T> spare = new ArrayDeque<>();
+	private boolean released = false;
+
+	/**
+	 * @return spare scratch space, or new one if there is none
+	 */
+	T take() {
+		synchronized (this.spare) {
+			T scratch = this.spare.pollLast();
+			if (scratch != null) {
+				return scratch;
+			}
+		}
+		return this.create();
+	}
+
+	/**
+	 * @param scratch
+	 *            taken before, not used by the caller any more
+	 */
+	void give(T scratch) {
+		synchronized (this.spare) {
+			if (!this.released) {
+				this.spare.addLast(scratch);
+				return;
+			}
+		}
+		this.dispose(scratch);
+	}
+
+	/**
+	 * disposes all spare scratch space, and the one in use when it is given
+	 * back.
+	 */
+	void release() {
+		List<T> disposed;
+		synchronized (this.spare) {
+			this.released = true;
+			disposed = new ArrayList<>(this.spare);
+			this.spare.clear();
+		}
+		for (T scratch : disposed) {
+			this.dispose(scratch);
+		}
+	}
+
+	/**
+	 * @return new scratch space
+	 */
+	protected abstract T create();
+
+	/**
+	 * frees what the garbage collector does not, e.g. native memory. does
+	 * nothing by default.
+	 * 
+	 * @param scratch
+	 */
+	protected void dispose(T scratch) {
+		/** nothing to free */
+	}
+}
@@ -0,0 +1,167 @@
+/**
+ *    Copyright (C) 2015  Peter Plaimer <dct-tool@tk.jku.at>
+ *
+ *    This file is part of the program
+ *    InterActive Image Processing / Discrete Cosine Transformation (DCT) 
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cx.uni.jk.mms.iaip.dct;
+
+import cx.uni.jk.mms.iaip.mat.ParallelRows;
+
+/**
+ * A {@link DctPlan} transforming first all rows, then all columns, by a 1D
+ * transform of the subclass.
+ * 
+ * Large matrices are split into ranges of rows transformed in parallel by
+ * {@link ParallelRows}. The column pass then runs on the matrix transposed by
+ * {@link ParallelDct}.
+ * 
+ * @param <S>
+ *            the type of the per thread scratch space of the 1D transform
+ */
+public abstract class SeparableDctPlan<S> extends DctPlan {
+
+	/** one row or column and the scratch of the 1D transform, per thread */
+	private final ScratchPool<Line<S>> lines = new ScratchPool<Line<S>>() {
+		@Override
+		protected Line<S> create() {
+			return new Line<S>(new float[Math.max(SeparableDctPlan.this.getRows(), SeparableDctPlan.this.getCols())],
+					SeparableDctPlan.this.createScratch());
+		}
+	};
+
+	/** the transposed matrix for the parallel column pass, per thread */
+	private final ScratchPool<float[]> transposed = new ScratchPool<float[]>() {
+		@Override
+		protected float[] create() {
+			return new float[SeparableDctPlan.this.getRows() * SeparableDctPlan.this.getCols()];
+		}
+	};
+
+	public SeparableDctPlan(DctEngine engine, int rows, int cols, boolean inverse) {
+		super(engine, rows, cols, inverse);
+	}
+
+	@Override
+	public void execute(float[] data, int offset, int stride) {
+		int rows = this.getRows();
+		int cols = this.getCols();
+		if (ParallelRows.isParallel(rows, cols)) {
+			this.executeParallel(data, offset, stride);
+			return;
+		}
+
+		this.transformRows(data, offset, stride, 0, rows, cols);
+
+		Line<S> line = this.lines.take();
+		try {
+			float[] buffer = line.buffer;
+			for (int col = 0; col < cols; col++) {
+				int start = offset + col;
+				for (int row = 0; row < rows; row++) {
+					buffer[row] = data[start + row * stride];
+				}
+				this.transformLine(buffer, rows, line.scratch);
+				for (int row = 0; row < rows; row++) {
+					data[start + row * stride] = buffer[row];
+				}
+			}
+		} finally {
+			this.lines.give(line);
+		}
+	}
+
+	@Override
+	public void release() {
+		super.release();
+		this.lines.release();
+		this.transposed.release();
+	}
+
+	/**
+	 * row pass, transpose, row pass over the transposed columns, transpose
+	 * back.
+	 */
+	private void executeParallel(final float[] data, final int offset, final int stride) {
+		final int rows = this.getRows();
+		final int cols = this.getCols();
+		final float[] transposedData = this.transposed.take();
+		try {
+			ParallelRows.forEachRowRange(rows, cols, new ParallelRows.RowRangeAction() {
+				@Override
+				public void run(int fromRow, int toRow) {
+					SeparableDctPlan.this.transformRows(data, offset, stride, fromRow, toRow, cols);
+				}
+			});
+			ParallelDct.transpose(data, offset, stride, transposedData, 0, rows, rows, cols);
+			ParallelRows.forEachRowRange(cols, rows, new ParallelRows.RowRangeAction() {
+				@Override
+				public void run(int fromCol, int toCol) {
+					SeparableDctPlan.this.transformRows(transposedData, 0, rows, fromCol, toCol, rows);
+				}
+			});
+			ParallelDct.transpose(transposedData, 0, rows, data, offset, stride, cols, rows);
+		} finally {
+			this.transposed.give(transposedData);
+		}
+	}
+
+	/**
+	 * transforms the rows fromRow to toRow - 1 of length cols in place.
+	 */
+	private void transformRows(float[] data, int offset, int stride, int fromRow, int toRow, int cols) {
+		Line<S> line = this.lines.take();
+		try {
+			for (int row = fromRow; row < toRow; row++) {
+				int start = offset + row * stride;
+				System.arraycopy(data, start, line.buffer, 0, cols);
+				this.transformLine(line.buffer, cols, line.scratch);
+				System.arraycopy(line.buffer, 0, data, start, cols);
+			}
+		} finally {
+			this.lines.give(line);
+		}
+	}
+
+	/**
+	 * @return new scratch space for one thread
+	 */
+	protected abstract S createScratch();
+
+	/**
+	 * 1D DCT or IDCT in place.
+	 * 
+	 * @param line
+	 * @param length
+	 *            rows or cols of this plan
+	 * @param scratch
+	 */
+	protected abstract void transformLine(float[] line, int length, S scratch);
+
+	/**
+	 * a line buffer with the scratch space of the 1D transform
+	 */
+	private static class Line<S> {
+		final float[] buffer;
+		final S scratch;
+
+		Line(float[] buffer, S scratch) {
+			this.buffer = buffer;
+			this.scratch = scratch;
+		}
+	}
+}
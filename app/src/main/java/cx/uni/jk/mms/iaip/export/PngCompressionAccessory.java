@@ -0,0 +1,68 @@
+/**
+ *    Copyright (C) 2015  Peter Plaimer <dct-tool@tk.jku.at>
+ *
+ *    This file is part of the program
+ *    InterActive Image Processing / Discrete Cosine Transformation (DCT) 
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cx.uni.jk.mms.iaip.export;
+
+import java.awt.BorderLayout;
+import java.util.zip.Deflater;
+
+import javax.swing.BorderFactory;
+import javax.swing.JComboBox;
+import javax.swing.JFileChooser;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+
+/**
+ * {@link JFileChooser} accessory choosing the compression level of a PNG
+ * file, from 0 (none, fastest) to 9 (best, slowest) or the default.
+ * 
+ * The choice is kept for the next file saved with the same accessory.
+ */
+public class PngCompressionAccessory extends JPanel {
+	private static final long serialVersionUID = 4702261580379520731L;
+
+	private final JComboBox<String> levelBox;
+
+	public PngCompressionAccessory() {
+		super(new BorderLayout(0, 4));
+		this.setBorder(BorderFactory.createEmptyBorder(0, 8, 0, 0));
+
+		String[] names = new String[Deflater.BEST_COMPRESSION - Deflater.NO_COMPRESSION + 2];
+		names[0] = "Default";
+		for (int level = Deflater.NO_COMPRESSION; level <= Deflater.BEST_COMPRESSION; level++) {
+			names[level + 1] = Integer.toString(level);
+		}
+		names[Deflater.NO_COMPRESSION + 1] += " (none, fastest)";
+		names[Deflater.BEST_COMPRESSION + 1] += " (best, slowest)";
+		this.levelBox = new JComboBox<>(names);
+
+		this.add(new JLabel("Compression:"), BorderLayout.NORTH);
+		this.add(this.levelBox, BorderLayout.CENTER);
+	}
+
+	/**
+	 * @return the chosen level, {@link Deflater#DEFAULT_COMPRESSION} or 0 to 9,
+	 *         see {@link PngEncoder#PngEncoder(int)}
+	 */
+	public int getLevel() {
+		int index = this.levelBox.getSelectedIndex();
+		return index <= 0 ? Deflater.DEFAULT_COMPRESSION : index - 1;
+	}
+}
@@ -0,0 +1,435 @@
+/**
+ *    Copyright (C) 2015  Peter Plaimer <dct-tool@tk.jku.at>
+ *
+ *    This file is part of the program
+ *    InterActive Image Processing / Discrete Cosine Transformation (DCT) 
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cx.uni.jk.mms.iaip.export;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.awt.image.Raster;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import cx.uni.jk.mms.iaip.mat.ParallelRows;
+import cx.uni.jk.mms.iaip.mat.ParallelRows.RowRangeAction;
+
+/**
+ * Writes 8 bit grey, indexed or RGB PNG files, compressing on all cores.
+ * 
+ * The scanlines are cut into bands of about {@link #BAND_BYTES} bytes, which
+ * are read, filtered and deflated in parallel, each primed with the last 32 KiB
+ * of the band before as dictionary, so the compression is nearly as good as in
+ * one piece. That part of the band before is filtered once more rather than
+ * kept, so only the bands being worked on are held besides the image. Every
+ * band but the last ends with a sync flush on a byte boundary, so the bands
+ * join to one zlib stream, written as one IDAT chunk per band.
+ */
+public class PngEncoder {
+
+	/**
+	 * progress of one encoding, called by several threads at once
+	 */
+	public interface Progress {
+		/**
+		 * @param done
+		 *            number of bands read, filtered and compressed
+		 * @param total
+		 *            number of bands
+		 */
+		void setDone(int done, int total);
+
+		/**
+		 * @return true to stop encoding with a {@link CancellationException}
+		 */
+		boolean isCancelled();
+	}
+
+	/** uncompressed bytes per band, as many as pigz uses */
+	private static final int BAND_BYTES = 128 * 1024;
+
+	/** the deflate window, as much of the band before as can be referred to */
+	private static final int WINDOW = 32 * 1024;
+
+	private static final byte[] SIGNATURE = { (byte) 137, 'P', 'N', 'G', '\r', '\n', 26, '\n' };
+
+	private static final int COLOR_GREY = 0;
+	private static final int COLOR_RGB = 2;
+	private static final int COLOR_INDEXED = 3;
+
+	private static final int FILTER_NONE = 0;
+	private static final int FILTER_SUB = 1;
+	private static final int FILTER_UP = 2;
+	private static final int FILTER_AVERAGE = 3;
+	private static final int FILTER_PAETH = 4;
+
+	private final int level;
+
+	/**
+	 * @param level
+	 *            {@link Deflater#DEFAULT_COMPRESSION} or 0 (none, fastest) to
+	 *            9 (best, slowest)
+	 */
+	public PngEncoder(int level) {
+		super();
+		if (level != Deflater.DEFAULT_COMPRESSION && (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION)) {
+			throw new IllegalArgumentException("illegal compression level " + level);
+		}
+		this.level = level;
+	}
+
+	public int getLevel() {
+		return this.level;
+	}
+
+	/**
+	 * writes image as PNG to out. out is not closed.
+	 * 
+	 * @param image
+	 *            must not change while it is encoded, other threads read it
+	 * @param out
+	 * @param progress
+	 *            may be null
+	 * @throws IOException
+	 * @throws CancellationException
+	 *             if progress asks to cancel
+	 */
+	public void encode(final BufferedImage image, OutputStream out, final Progress progress) throws IOException {
+		final int width = image.getWidth();
+		final int height = image.getHeight();
+		final int colorType;
+		if (image.getType() == BufferedImage.TYPE_BYTE_GRAY) {
+			colorType = COLOR_GREY;
+		} else if (image.getType() == BufferedImage.TYPE_BYTE_INDEXED) {
+			colorType = COLOR_INDEXED;
+		} else {
+			colorType = COLOR_RGB;
+		}
+		final int channels = colorType == COLOR_RGB ? 3 : 1;
+		final int rowBytes = 1 + width * channels;
+
+		/** deflate the bands */
+		final int bandRows = Math.max(1, BAND_BYTES / rowBytes);
+		final int bands = Math.max(1, (height + bandRows - 1) / bandRows);
+		final byte[][] compressed = new byte[bands][];
+		final int[] checksums = new int[bands];
+		final AtomicInteger done = new AtomicInteger();
+		if (progress != null) {
+			progress.setDone(0, bands);
+		}
+		this.forEach(bands, bandRows * rowBytes, new RowRangeAction() {
+			@Override
+			public void run(int fromBand, int toBand) {
+				for (int band = fromBand; band < toBand; band++) {
+					if (progress != null && progress.isCancelled()) {
+						throw new CancellationException();
+					}
+					int fromRow = band * bandRows;
+					int toRow = Math.min(fromRow + bandRows, height);
+					Adler32 adler = new Adler32();
+					compressed[band] = PngEncoder.this.deflateRows(image, colorType, fromRow, toRow, band == bands - 1, adler);
+					checksums[band] = (int) adler.getValue();
+					if (progress != null) {
+						progress.setDone(done.incrementAndGet(), bands);
+					}
+				}
+			}
+		});
+
+		int checksum = checksums[0];
+		for (int band = 1; band < bands; band++) {
+			int toRow = Math.min((band + 1) * bandRows, height);
+			checksum = combineAdler32(checksum, checksums[band], (long) (toRow - band * bandRows) * rowBytes);
+		}
+
+		DataOutputStream data = new DataOutputStream(out);
+		data.write(SIGNATURE);
+
+		ByteArrayOutputStream header = new ByteArrayOutputStream();
+		DataOutputStream headerData = new DataOutputStream(header);
+		headerData.writeInt(width);
+		headerData.writeInt(height);
+		/** bit depth, colour type, deflate, adaptive filtering, no interlace */
+		headerData.write(new byte[] { 8, (byte) colorType, 0, 0, 0 });
+		writeChunk(data, "IHDR", header.toByteArray());
+
+		if (colorType == COLOR_INDEXED) {
+			IndexColorModel palette = (IndexColorModel) image.getColorModel();
+			byte[] entries = new byte[palette.getMapSize() * 3];
+			for (int i = 0; i < palette.getMapSize(); i++) {
+				entries[3 * i] = (byte) palette.getRed(i);
+				entries[3 * i + 1] = (byte) palette.getGreen(i);
+				entries[3 * i + 2] = (byte) palette.getBlue(i);
+			}
+			writeChunk(data, "PLTE", entries);
+		}
+
+		for (int band = 0; band < bands; band++) {
+			ByteArrayOutputStream chunk = new ByteArrayOutputStream(compressed[band].length + 6);
+			if (band == 0) {
+				/** zlib header: deflate with 32 KiB window, default level, no dictionary */
+				chunk.write(0x78);
+				chunk.write(0x9c);
+			}
+			chunk.write(compressed[band]);
+			if (band == bands - 1) {
+				new DataOutputStream(chunk).writeInt(checksum);
+			}
+			writeChunk(data, "IDAT", chunk.toByteArray());
+		}
+
+		writeChunk(data, "IEND", new byte[0]);
+		data.flush();
+	}
+
+	/**
+	 * runs action on ranges of count items of cost bytes each, in parallel if
+	 * they are many bytes
+	 */
+	private void forEach(int count, int cost, RowRangeAction action) {
+		if (ParallelRows.isParallel(count, cost)) {
+			ParallelRows.forEachRowRange(count, cost, action);
+		} else {
+			action.run(0, count);
+		}
+	}
+
+	/**
+	 * @return raw deflate data of the filtered rows fromRow..toRow - 1, ending
+	 *         on a byte boundary unless it is the last band, which finishes the
+	 *         stream
+	 */
+	private byte[] deflateRows(BufferedImage image, int colorType, int fromRow, int toRow, boolean last, Adler32 adler) {
+		int channels = colorType == COLOR_RGB ? 3 : 1;
+		int rowBytes = 1 + image.getWidth() * channels;
+
+		/** the rows of the dictionary, and the one above them to filter by */
+		int dictionaryRow = Math.max(0, fromRow - (WINDOW + rowBytes - 1) / rowBytes);
+		int firstRow = Math.max(0, dictionaryRow - 1);
+		byte[] pixels = new byte[(toRow - firstRow) * rowBytes];
+		readRows(image, colorType, firstRow, toRow, pixels, rowBytes);
+
+		byte[] filtered = new byte[(toRow - dictionaryRow) * rowBytes];
+		byte[] candidate = new byte[rowBytes];
+		int[] counts = new int[256];
+		for (int row = dictionaryRow; row < toRow; row++) {
+			filterRow(pixels, (row - firstRow) * rowBytes, row > 0, filtered, (row - dictionaryRow) * rowBytes, rowBytes, channels,
+					colorType == COLOR_INDEXED, candidate, counts);
+		}
+		int from = (fromRow - dictionaryRow) * rowBytes;
+		adler.update(filtered, from, filtered.length - from);
+
+		Deflater deflater = new Deflater(this.level, true);
+		try {
+			if (from > 0) {
+				int start = Math.max(0, from - WINDOW);
+				deflater.setDictionary(filtered, start, from - start);
+			}
+			deflater.setInput(filtered, from, filtered.length - from);
+
+			ByteArrayOutputStream out = new ByteArrayOutputStream((filtered.length - from) / 2 + 64);
+			byte[] buffer = new byte[64 * 1024];
+			if (last) {
+				deflater.finish();
+				while (!deflater.finished()) {
+					int length = deflater.deflate(buffer);
+					out.write(buffer, 0, length);
+				}
+			} else {
+				/** a full buffer may hide more output */
+				int length;
+				do {
+					length = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+					out.write(buffer, 0, length);
+				} while (length == buffer.length);
+			}
+			return out.toByteArray();
+		} finally {
+			deflater.end();
+		}
+	}
+
+	/**
+	 * @return the Adler-32 checksum of two pieces of data from the checksums
+	 *         of each, as zlib's adler32_combine does
+	 */
+	private static int combineAdler32(int first, int second, long secondLength) {
+		final long base = 65521;
+		long remainder = secondLength % base;
+		long sum1 = first & 0xffff;
+		long sum2 = remainder * sum1 % base;
+		sum1 += (second & 0xffff) + base - 1;
+		sum2 += (first >>> 16) + (second >>> 16) + base - remainder;
+		if (sum1 >= base) {
+			sum1 -= base;
+		}
+		if (sum1 >= base) {
+			sum1 -= base;
+		}
+		if (sum2 >= base << 1) {
+			sum2 -= base << 1;
+		}
+		if (sum2 >= base) {
+			sum2 -= base;
+		}
+		return (int) (sum1 | sum2 << 16);
+	}
+
+	/**
+	 * copies the pixels of rows fromRow..toRow - 1 of image to the start of
+	 * pixels, behind the filter type byte of each row.
+	 */
+	private static void readRows(BufferedImage image, int colorType, int fromRow, int toRow, byte[] pixels, int rowBytes) {
+		int width = image.getWidth();
+		if (colorType == COLOR_RGB) {
+			int[] rgbs = new int[width];
+			for (int row = fromRow; row < toRow; row++) {
+				image.getRGB(0, row, width, 1, rgbs, 0, width);
+				int index = (row - fromRow) * rowBytes + 1;
+				for (int col = 0; col < width; col++) {
+					int rgb = rgbs[col];
+					pixels[index++] = (byte) (rgb >> 16);
+					pixels[index++] = (byte) (rgb >> 8);
+					pixels[index++] = (byte) rgb;
+				}
+			}
+		} else {
+			/** grey values or indices, one byte per pixel */
+			Raster raster = image.getRaster();
+			byte[] bytes = new byte[width];
+			for (int row = fromRow; row < toRow; row++) {
+				raster.getDataElements(0, row, width, 1, bytes);
+				System.arraycopy(bytes, 0, pixels, (row - fromRow) * rowBytes + 1, width);
+			}
+		}
+	}
+
+	/**
+	 * filters the row of pixels starting at start into filtered at
+	 * filteredStart. Indices are not filtered, as the PNG specification
+	 * recommends. For values the filter type giving the bytes of least entropy
+	 * is chosen. Unlike the smallest sum of absolute differences libpng uses,
+	 * this also leaves rows of few distinct colours unfiltered, like charts or
+	 * text, which filtering would spread over many values.
+	 * 
+	 * @param candidate
+	 *            rowBytes to try the filter types in
+	 * @param counts
+	 *            256 to count the bytes in
+	 */
+	private static void filterRow(byte[] pixels, int start, boolean hasPrevious, byte[] filtered, int filteredStart, int rowBytes,
+			int channels, boolean indexed, byte[] candidate, int[] counts) {
+		int best = FILTER_NONE;
+		if (!indexed) {
+			double bestCost = Double.MAX_VALUE;
+			for (int type = FILTER_NONE; type <= FILTER_PAETH; type++) {
+				filterBytes(pixels, start, hasPrevious, rowBytes, channels, type, candidate, 0);
+				double cost = entropyCost(candidate, rowBytes, counts);
+				if (cost < bestCost) {
+					bestCost = cost;
+					best = type;
+				}
+			}
+		}
+		filterBytes(pixels, start, hasPrevious, rowBytes, channels, best, filtered, filteredStart);
+	}
+
+	/**
+	 * @return the bits bytes[1..length[ take if each byte is coded by its
+	 *         frequency, less a constant depending on length only
+	 */
+	private static double entropyCost(byte[] bytes, int length, int[] counts) {
+		Arrays.fill(counts, 0);
+		for (int i = 1; i < length; i++) {
+			counts[bytes[i] & 0xff]++;
+		}
+		/** the entropy in nats is that plus (length - 1) * log(length - 1) */
+		double cost = 0;
+		for (int count : counts) {
+			if (count > 1) {
+				cost -= count * Math.log(count);
+			}
+		}
+		return cost;
+	}
+
+	/**
+	 * filters the row of pixels starting at start by type into out at
+	 * outStart, the type included. The bytes left of the first pixel and
+	 * above the first row count as 0.
+	 */
+	private static void filterBytes(byte[] pixels, int start, boolean hasPrevious, int rowBytes, int channels, int type, byte[] out,
+			int outStart) {
+		int above = start - rowBytes;
+		out[outStart] = (byte) type;
+		switch (type) {
+		case FILTER_SUB:
+			for (int i = 1; i < rowBytes; i++) {
+				int a = i > channels ? pixels[start + i - channels] : 0;
+				out[outStart + i] = (byte) (pixels[start + i] - a);
+			}
+			break;
+		case FILTER_UP:
+			for (int i = 1; i < rowBytes; i++) {
+				int b = hasPrevious ? pixels[above + i] : 0;
+				out[outStart + i] = (byte) (pixels[start + i] - b);
+			}
+			break;
+		case FILTER_AVERAGE:
+			for (int i = 1; i < rowBytes; i++) {
+				int a = i > channels ? pixels[start + i - channels] & 0xff : 0;
+				int b = hasPrevious ? pixels[above + i] & 0xff : 0;
+				out[outStart + i] = (byte) (pixels[start + i] - (a + b >> 1));
+			}
+			break;
+		case FILTER_PAETH:
+			for (int i = 1; i < rowBytes; i++) {
+				int a = i > channels ? pixels[start + i - channels] & 0xff : 0;
+				int b = hasPrevious ? pixels[above + i] & 0xff : 0;
+				int c = hasPrevious && i > channels ? pixels[above + i - channels] & 0xff : 0;
+				int p = a + b - c;
+				int pa = Math.abs(p - a);
+				int pb = Math.abs(p - b);
+				int pc = Math.abs(p - c);
+				out[outStart + i] = (byte) (pixels[start + i] - (pa <= pb && pa <= pc ? a : pb <= pc ? b : c));
+			}
+			break;
+		default:
+			System.arraycopy(pixels, start + 1, out, outStart + 1, rowBytes - 1);
+		}
+	}
+
+	private static void writeChunk(DataOutputStream out, String type, byte[] data) throws IOException {
+		byte[] typeBytes = type.getBytes("US-ASCII");
+		CRC32 crc = new CRC32();
+		crc.update(typeBytes);
+		crc.update(data);
+		out.writeInt(data.length);
+		out.write(typeBytes);
+		out.write(data);
+		out.writeInt((int) crc.getValue());
+	}
+}
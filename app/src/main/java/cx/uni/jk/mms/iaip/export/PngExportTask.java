@@ -0,0 +1,118 @@
+/**
+ *    Copyright (C) 2015  Peter Plaimer <dct-tool@tk.jku.at>
+ *
+ *    This file is part of the program
+ *    InterActive Image Processing / Discrete Cosine Transformation (DCT) 
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cx.uni.jk.mms.iaip.export;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.logging.Logger;
+
+import javax.swing.SwingWorker;
+
+import org.opencv.core.Mat;
+
+import cx.uni.jk.mms.iaip.filter.MatHelper;
+
+/**
+ * Saves a snapshot of an image or an 8 bit mat as PNG file off the event
+ * dispatch thread, see {@link PngEncoder}.
+ * 
+ * The progress property runs from 0 to 100 while the bands are compressed.
+ * After {@link #cancel(boolean)} the encoding stops at the next band and the
+ * incomplete file is deleted, so is it after a failure.
+ */
+public class PngExportTask extends SwingWorker<File, Void> {
+	private static Logger logger = Logger.getGlobal();
+
+	private final File file;
+
+	private final PngEncoder encoder;
+
+	/** the snapshot to save, null if byteMat is to be converted first */
+	private final BufferedImage image;
+
+	private final Mat byteMat;
+
+	/**
+	 * @param image
+	 *            copied right now, it may change after the call
+	 * @param file
+	 * @param level
+	 *            of compression, see {@link PngEncoder#PngEncoder(int)}
+	 */
+	public PngExportTask(BufferedImage image, File file, int level) {
+		super();
+		this.file = file;
+		this.encoder = new PngEncoder(level);
+		this.image = new BufferedImage(image.getColorModel(), image.copyData(null), image.isAlphaPremultiplied(), null);
+		this.byteMat = null;
+	}
+
+	/**
+	 * @param byteMat
+	 *            8 bit grey values, which must not change afterwards, e.g. a
+	 *            copy
+	 * @param file
+	 * @param level
+	 *            of compression, see {@link PngEncoder#PngEncoder(int)}
+	 */
+	public PngExportTask(Mat byteMat, File file, int level) {
+		super();
+		this.file = file;
+		this.encoder = new PngEncoder(level);
+		this.image = null;
+		this.byteMat = byteMat;
+	}
+
+	public File getFile() {
+		return this.file;
+	}
+
+	@Override
+	protected File doInBackground() throws IOException {
+		long start = System.nanoTime();
+		BufferedImage source = this.image != null ? this.image : MatHelper.convertMatTo8BitBufferedImage(this.byteMat);
+		boolean complete = false;
+		try (OutputStream out = new BufferedOutputStream(new FileOutputStream(this.file))) {
+			this.encoder.encode(source, out, new PngEncoder.Progress() {
+				@Override
+				public void setDone(int done, int total) {
+					PngExportTask.this.setProgress(100 * done / total);
+				}
+
+				@Override
+				public boolean isCancelled() {
+					return PngExportTask.this.isCancelled();
+				}
+			});
+			complete = true;
+		} finally {
+			if (!complete && !this.file.delete()) {
+				logger.warning("cannot delete incomplete " + this.file);
+			}
+		}
+		logger.fine(String.format("saved %s in %d ms", this.file, (System.nanoTime() - start) / 1000000));
+		return this.file;
+	}
+}
@@ -0,0 +1,93 @@
+/**
+ *    Copyright (C) 2015  Peter Plaimer <dct-tool@tk.jku.at>
+ *
+ *    This file is part of the program
+ *    InterActive Image Processing / Discrete Cosine Transformation (DCT) 
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cx.uni.jk.mms.iaip.filter;
+
+import cx.uni.jk.mms.iaip.mat.MatStatistics;
+
+/**
+ * Common base of the filters showing log(1 + abs(v)). Each value is mapped by
+ * a {@link LogLookupTable} straight to the bytes of all channels.
+ */
+public abstract class AbstractLogFilter extends AbstractRowFilter {
+
+	/** table of the range used last, ranges change rarely */
+	private volatile LogLookupTable table = null;
+
+	@Override
+	protected RowKernel createKernel(ValueRange range) {
+		final LogLookupTable lut = this.getTable(range);
+		return new RowKernel() {
+			@Override
+			public void convertRow(float[] values, byte[] bytes) {
+				AbstractLogFilter.this.convertValues(values, bytes, lut);
+			}
+		};
+	}
+
+	/**
+	 * log(1 + abs(v)) grows with abs(v) and is never negative, so the range
+	 * is 0..log(1 + max(abs(v))). For the filters splitting the signs both
+	 * log(1 + max(-v, 0)) and log(1 + max(v, 0)) reach their maximum at the
+	 * largest absolute value.
+	 */
+	@Override
+	public ValueRange getValueRange(MatStatistics statistics) {
+		return new ValueRange(0.0d, Math.log1p(statistics.getMaxAbs()));
+	}
+
+	/**
+	 * converts one row of values to bytes.
+	 * 
+	 * @param values
+	 * @param bytes
+	 *            receives {@link #getChannels()} bytes per value
+	 * @param lut
+	 *            maps absolute values to bytes
+	 */
+	protected abstract void convertValues(float[] values, byte[] bytes, LogLookupTable lut);
+
+	/**
+	 * converts one row of values to signed magnitude indices of
+	 * {@link Palettes}, for filters distinguishing the signs by colour.
+	 * 
+	 * @param values
+	 * @param bytes
+	 *            receives one index per value
+	 * @param lut
+	 *            maps absolute values to bytes
+	 */
+	protected static void convertValuesToSignedMagnitude(float[] values, byte[] bytes, LogLookupTable lut) {
+		for (int i = 0; i < values.length; i++) {
+			float value = values[i];
+			int magnitude = lut.lookup(value) >> 1;
+			bytes[i] = (byte) (value < 0.0f ? Palettes.NEGATIVE | magnitude : magnitude);
+		}
+	}
+
+	private LogLookupTable getTable(ValueRange range) {
+		LogLookupTable lut = this.table;
+		if (lut == null || !lut.getRange().equals(range)) {
+			lut = new LogLookupTable(range);
+			this.table = lut;
+		}
+		return lut;
+	}
+}
@@ -0,0 +1,126 @@
+/**
+ *    Copyright (C) 2015  Peter Plaimer <dct-tool@tk.jku.at>
+ *
+ *    This file is part of the program
+ *    InterActive Image Processing / Discrete Cosine Transformation (DCT) 
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cx.uni.jk.mms.iaip.filter;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+
+import cx.uni.jk.mms.iaip.mat.ParallelRows;
+import cx.uni.jk.mms.iaip.mat.ParallelRows.RowRangeAction;
+
+/**
+ * Common base of the filters converting a mat row by row: each row is read
+ * once, converted by a {@link RowKernel} and written as bytes, in parallel
+ * ranges of rows for large mats, instead of several passes over temporary
+ * mats.
+ */
+public abstract class AbstractRowFilter extends AbstractMatFilter {
+
+	/**
+	 * converts rows of values to bytes, called by several threads at once.
+	 */
+	protected interface RowKernel {
+		/**
+		 * @param values
+		 *            one row of the mat, may be overwritten
+		 * @param bytes
+		 *            receives {@link AbstractRowFilter#getChannels()} bytes per
+		 *            value
+		 */
+		void convertRow(float[] values, byte[] bytes);
+	}
+
+	/** one row each, mat.get and mat.put copy whole arrays */
+	private static final ThreadLocal<float[]> valueBuffers = new ThreadLocal<float[]>() {
+		@Override
+		protected float[] initialValue() {
+			return new float[0];
+		}
+	};
+
+	private static final ThreadLocal<byte[]> byteBuffers = new ThreadLocal<byte[]>() {
+		@Override
+		protected byte[] initialValue() {
+			return new byte[0];
+		}
+	};
+
+	@Override
+	public Mat convert(final Mat mat, ValueRange range) {
+		final int rows = mat.rows();
+		final int cols = mat.cols();
+		final int channels = this.getChannels();
+		final Mat byteMat = new Mat(rows, cols, CvType.makeType(CvType.CV_8U, channels));
+		if (rows == 0 || cols == 0) {
+			return byteMat;
+		}
+		final RowKernel kernel = this.createKernel(range);
+
+		RowRangeAction action = new RowRangeAction() {
+			@Override
+			public void run(int fromRow, int toRow) {
+				float[] values = rowBuffer(valueBuffers, cols);
+				byte[] bytes = byteBuffers.get();
+				if (bytes.length != cols * channels) {
+					bytes = new byte[cols * channels];
+					byteBuffers.set(bytes);
+				}
+				for (int row = fromRow; row < toRow; row++) {
+					mat.get(row, 0, values);
+					kernel.convertRow(values, bytes);
+					byteMat.put(row, 0, bytes);
+				}
+			}
+		};
+		if (ParallelRows.isParallel(rows, cols)) {
+			ParallelRows.forEachRowRange(rows, cols, action);
+		} else {
+			action.run(0, rows);
+		}
+		return byteMat;
+	}
+
+	/**
+	 * @return number of channels of the converted mat
+	 */
+	protected abstract int getChannels();
+
+	/**
+	 * @param range
+	 *            the range of the whole mat as given by
+	 *            {@link #getValueRange(cx.uni.jk.mms.iaip.mat.MatStatistics)}
+	 * @return the kernel converting the rows of one mat
+	 */
+	protected abstract RowKernel createKernel(ValueRange range);
+
+	/**
+	 * @return the buffer of the current thread if it has length, else a new one
+	 *         which replaces it
+	 */
+	protected static float[] rowBuffer(ThreadLocal<float[]> buffers, int length) {
+		float[] buffer = buffers.get();
+		if (buffer.length != length) {
+			buffer = new float[length];
+			buffers.set(buffer);
+		}
+		return buffer;
+	}
+}
@@ -20,38 +20,39 @@
 
 package cx.uni.jk.mms.iaip.filter;
 
-import org.opencv.core.Core;
-import org.opencv.core.Core.MinMaxLocResult;
 import org.opencv.core.CvType;
 import org.opencv.core.Mat;
 import org.opencv.core.MatOfByte;
 
+import cx.uni.jk.mms.iaip.mat.MatStatistics;
+
 /**
  * A {@link MatFilter} which applies automatic contrast and brightness
  * correction to the mat
  */
-public class GreyAutoContrastBrightness implements MatFilter {
+public class GreyAutoContrastBrightness extends AbstractMatFilter {
 	/*
 	 * (non-Javadoc)
 	 * 
 	 * @see filter.MatFilter#MatToBufferedImage(org.opencv.core.Mat)
 	 */
 	@Override
-	public Mat convert(Mat mat) {
-		/** find contrast and brightness to fit into 8 bit */
-		MinMaxLocResult mmlr = Core.minMaxLoc(mat);
-		double min = mmlr.minVal; // Math.min(mmlr.minVal, 0);
-		double max = mmlr.maxVal; // Math.max(mmlr.maxVal, 255);
-		double alpha = 256.0d / (max - min);
-		double beta = -min * alpha;
-
+	public Mat convert(Mat mat, ValueRange range) {
 		/** conversion to 8 bit Mat */
 		Mat byteMat = new MatOfByte();
-		mat.convertTo(byteMat, CvType.CV_8U, alpha, beta);
+		mat.convertTo(byteMat, CvType.CV_8U, range.getAlpha(), range.getBeta());
 
 		return byteMat;
 	}
 
+	@Override
+	public ValueRange getValueRange(MatStatistics statistics) {
+		/** find contrast and brightness to fit into 8 bit */
+		double min = statistics.getMin(); // Math.min(min, 0);
+		double max = statistics.getMax(); // Math.max(max, 255);
+		return new ValueRange(min, max);
+	}
+
 	@Override
 	public String toString() {
 		return "Auto contrast/brightness grey";
@@ -0,0 +1,115 @@
+/**
+ *    Copyright (C) 2015  Peter Plaimer <dct-tool@tk.jku.at>
+ *
+ *    This file is part of the program
+ *    InterActive Image Processing / Discrete Cosine Transformation (DCT) 
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cx.uni.jk.mms.iaip.filter;
+
+/**
+ * Maps absolute values a to the 8 bit value of log(1 + a) in a
+ * {@link ValueRange}, without computing any logarithm per value.
+ * 
+ * log(1 + a) grows with a, so each of the 256 results is reached at a
+ * threshold, found once per range by the inverse expm1. The upper 16 bits of
+ * a float, its exponent and 8 bits of mantissa, select a bucket of values
+ * differing by less than 0.4 %, which is indexed to the result of its
+ * smallest value. Few buckets contain a threshold, for these the next
+ * threshold is compared. The results are exact up to values within one
+ * float step of a threshold, which is far below the precision of the
+ * display.
+ */
+final class LogLookupTable {
+	/** bits of a float dropped for the index of its bucket */
+	private static final int BUCKET_SHIFT = 15;
+
+	private final ValueRange range;
+
+	/** thresholds[k] is the smallest absolute value mapped to k or more */
+	private final float[] thresholds = new float[256];
+
+	/** result of the smallest value of each bucket */
+	private final byte[] buckets = new byte[1 << (31 - BUCKET_SHIFT)];
+
+	LogLookupTable(ValueRange range) {
+		super();
+		this.range = range;
+		double alpha = range.getAlpha();
+		double beta = range.getBeta();
+		this.thresholds[0] = Float.NEGATIVE_INFINITY;
+		for (int k = 1; k < 256; k++) {
+			/** rounding reaches k at k - 0.5 */
+			double target = k - 0.5d;
+			double x = Math.expm1((target - beta) / alpha);
+			float t;
+			if (Double.isNaN(x) || x > Float.MAX_VALUE) {
+				t = Float.POSITIVE_INFINITY;
+			} else if (x <= 0.0d) {
+				t = 0.0f;
+			} else {
+				/** correct the rounding of x to float by single steps */
+				t = (float) x;
+				while (t > 0.0f && Math.log1p(Math.nextAfter(t, Double.NEGATIVE_INFINITY)) * alpha + beta >= target) {
+					t = Math.nextAfter(t, Double.NEGATIVE_INFINITY);
+				}
+				while (Math.log1p(t) * alpha + beta < target) {
+					t = Math.nextUp(t);
+				}
+			}
+			this.thresholds[k] = t;
+		}
+		for (int bucket = 0; bucket < this.buckets.length; bucket++) {
+			this.buckets[bucket] = (byte) this.search(Float.intBitsToFloat(bucket << BUCKET_SHIFT));
+		}
+	}
+
+	ValueRange getRange() {
+		return this.range;
+	}
+
+	/**
+	 * @param value
+	 * @return round(log(1 + abs(value)) * alpha + beta), saturated to 0..255
+	 */
+	int lookup(float value) {
+		int bits = Float.floatToRawIntBits(value) & Integer.MAX_VALUE;
+		int k = this.buckets[bits >>> BUCKET_SHIFT] & 0xff;
+		float abs = Float.intBitsToFloat(bits);
+		while (k < 255 && abs >= this.thresholds[k + 1]) {
+			k++;
+		}
+		return k;
+	}
+
+	/**
+	 * @param abs
+	 *            an absolute value
+	 * @return the result of abs by a binary search among the thresholds
+	 */
+	private int search(float abs) {
+		float[] t = this.thresholds;
+		int k = abs >= t[128] ? 128 : 0;
+		k += abs >= t[k + 64] ? 64 : 0;
+		k += abs >= t[k + 32] ? 32 : 0;
+		k += abs >= t[k + 16] ? 16 : 0;
+		k += abs >= t[k + 8] ? 8 : 0;
+		k += abs >= t[k + 4] ? 4 : 0;
+		k += abs >= t[k + 2] ? 2 : 0;
+		k += abs >= t[k + 1] ? 1 : 0;
+		return k;
+	}
+}
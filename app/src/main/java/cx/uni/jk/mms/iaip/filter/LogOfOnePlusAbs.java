@@ -20,44 +20,22 @@
 
 package cx.uni.jk.mms.iaip.filter;
 
-import org.opencv.core.Core;
-import org.opencv.core.Core.MinMaxLocResult;
-import org.opencv.core.CvType;
-import org.opencv.core.Mat;
-import org.opencv.core.MatOfByte;
-import org.opencv.core.Scalar;
-
 /**
  * A {@link MatFilter} which applies automatic logarithmic scaling to the absolute
  * values of the mat
  */
-public class LogOfOnePlusAbs implements MatFilter {
-	/*
-	 * (non-Javadoc)
-	 * 
-	 * @see filter.MatFilter#MatToBufferedImage(org.opencv.core.Mat)
-	 */
-	@Override
-	public Mat convert(Mat mat) {
-
-		/** make absolute values and log */
-		Mat tempMat = mat.clone();
-		Core.absdiff(tempMat, new Scalar(0.0d), tempMat);
-		Core.add(tempMat, new Scalar(1.0d), tempMat);
-		Core.log(tempMat, tempMat);
-
-		/** find contrast and brightness to fit into 8 bit */
-		MinMaxLocResult mmlr = Core.minMaxLoc(tempMat);
-		double min = Math.min(mmlr.minVal, 0);
-		double max = mmlr.maxVal;
-		double alpha = 256.0d / (max - min);
-		double beta = -min * alpha;
+public class LogOfOnePlusAbs extends AbstractLogFilter {
 
-		/** conversion to 8 bit Mat applying contrast alpha and brightness beta */
-		Mat byteMat = new MatOfByte();
-		tempMat.convertTo(byteMat, CvType.CV_8U, alpha, beta);
+	@Override
+	protected int getChannels() {
+		return 1;
+	}
 
-		return byteMat;
+	@Override
+	protected void convertValues(float[] values, byte[] bytes, LogLookupTable lut) {
+		for (int i = 0; i < values.length; i++) {
+			bytes[i] = (byte) lut.lookup(values[i]);
+		}
 	}
 
 	@Override
@@ -20,75 +20,32 @@
 
 package cx.uni.jk.mms.iaip.filter;
 
-import java.util.ArrayList;
-import java.util.List;
-
-import org.opencv.core.Core;
-import org.opencv.core.Core.MinMaxLocResult;
-import org.opencv.core.CvType;
-import org.opencv.core.Mat;
-import org.opencv.core.MatOfInt;
-import org.opencv.core.Scalar;
+import java.awt.Color;
+import java.awt.image.IndexColorModel;
 
 /**
  * A {@link MatFilter} which applies automatic logarithmic scaling to the
  * absolute values of the mat, giving distinct colors red/blue according to the
  * sign of the original mat value
  */
-public class LogRedBlue implements MatFilter {
-	/*
-	 * (non-Javadoc)
-	 * 
-	 * @see filter.MatFilter#MatToBufferedImage(org.opencv.core.Mat)
-	 */
-	@Override
-	public Mat convert(Mat mat) {
-
-		MinMaxLocResult negativeMmlr, positiveMmlr;
-		double min, max, alpha, beta;
-
-		/** negative values to positive and log */
-		Mat negativeMat = mat.clone();
-		Core.min(negativeMat, new Scalar(0.0d), negativeMat);
-		Core.multiply(negativeMat, new Scalar(-1.0d), negativeMat);
-		Core.add(negativeMat, new Scalar(1.0d), negativeMat);
-		Core.log(negativeMat, negativeMat);
-
-		/** positve values log */
-		Mat positiveMat = mat.clone();
-		Core.max(positiveMat, new Scalar(0.0d), positiveMat);
-		Core.add(positiveMat, new Scalar(1.0d), positiveMat);
-		Core.log(positiveMat, positiveMat);
+public class LogRedBlue extends AbstractLogFilter {
 
-		/** find common contrast and brightness to fit into 8 bit */
-		negativeMmlr = Core.minMaxLoc(negativeMat);
-		positiveMmlr = Core.minMaxLoc(positiveMat);
-		min = 0;
-		max = Math.max(negativeMmlr.maxVal, positiveMmlr.maxVal);
-		alpha = 256.0d / (max - min);
-		beta = -min * alpha;
+	/** negative values blue, positive values red */
+	private static final IndexColorModel PALETTE = Palettes.createSignedMagnitude(Color.BLUE, Color.RED);
 
-		/** conversion of both matrices to 8 bit */
-		negativeMat.convertTo(negativeMat, CvType.CV_8UC1, alpha, beta);
-		positiveMat.convertTo(positiveMat, CvType.CV_8UC1, alpha, beta);
+	@Override
+	protected int getChannels() {
+		return 1;
+	}
 
-		/** combine both matrices into one 8 bit 3 channel rgb picture */
-		Mat tempMat = new Mat(mat.rows(), mat.cols(), CvType.CV_8UC3);
-		List<Mat> mixSrcMats = new ArrayList<>();
-		mixSrcMats.add(negativeMat); // 1 channel: 0
-		mixSrcMats.add(positiveMat); // 1 channel: 1
-		List<Mat> mixDstMats = new ArrayList<>();
-		mixDstMats.add(tempMat); // 3 channels: 0-2
-		MatOfInt fromToMat = new MatOfInt(0, 0 /* neg->red */, -1, 1/*
-																	 * null->green
-																	 */, 1, 2 /*
-																			 * pos-
-																			 * >
-																			 * blue
-																			 */);
-		Core.mixChannels(mixSrcMats, mixDstMats, fromToMat);
+	@Override
+	protected void convertValues(float[] values, byte[] bytes, LogLookupTable lut) {
+		convertValuesToSignedMagnitude(values, bytes, lut);
+	}
 
-		return tempMat;
+	@Override
+	public IndexColorModel getPalette() {
+		return PALETTE;
 	}
 
 	@Override
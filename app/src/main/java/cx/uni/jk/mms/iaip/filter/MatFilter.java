@@ -20,11 +20,43 @@
 
 package cx.uni.jk.mms.iaip.filter;
 
+import java.awt.image.IndexColorModel;
+
 import org.opencv.core.Mat;
 
+import cx.uni.jk.mms.iaip.mat.MatStatistics;
+
 /**
  * Filter which converts mat values
+ * 
+ * Filters may scale the values by their range in the whole mat. Converting a
+ * part of a mat with the {@link ValueRange} of the whole mat gives the same
+ * values as the same part of the whole mat converted.
  */
 public interface MatFilter {
 	public Mat convert(Mat mat);
+
+	/**
+	 * @param statistics
+	 *            of the whole mat
+	 * @return the range of values of the whole mat mapped to 0..255
+	 */
+	public ValueRange getValueRange(MatStatistics statistics);
+
+	/**
+	 * @param mat
+	 *            the whole mat or a part of it
+	 * @param range
+	 *            the range of the whole mat as given by
+	 *            {@link #getValueRange(MatStatistics)}
+	 * @return the converted mat
+	 */
+	public Mat convert(Mat mat, ValueRange range);
+
+	/**
+	 * @return the colours of the values of a mat converted to one channel of
+	 *         indices, or null if the converted mat holds grey values or the
+	 *         colours themselves
+	 */
+	public IndexColorModel getPalette();
 }
@@ -20,23 +20,79 @@
 
 package cx.uni.jk.mms.iaip.filter;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Enumeration;
 import java.util.List;
+import java.util.logging.Logger;
+
+import cx.uni.jk.mms.iaip.filter.stage.FilterChainCompiler;
 
 /**
  * Manager for all implementations of {@link MatFilter} 
  */
 public class MatFilterManager {
 
+	/** chain specifications, see {@link #addChains(FilterChainCompiler, URL)} */
+	private static final String CHAINS_PATH = "resources/filters/chains.txt";
+
+	private static Logger logger = Logger.getGlobal();
+
 	private static List<MatFilter> filters = new ArrayList<>();
 
 	/** initializer */
 	static {
 		filters.add(new OriginalMat());
 		filters.add(new GreyAutoContrastBrightness());
+		filters.add(new PercentileAutoContrast());
 		filters.add(new LogOfOnePlusAbs());
 		filters.add(new LogYellowCyan());
 		// filters.add(new LogRedBlue());
+
+		/** stages and chains may come from the same jar */
+		ClassLoader loader = MatFilterManager.class.getClassLoader();
+		FilterChainCompiler compiler = new FilterChainCompiler(loader);
+		try {
+			Enumeration<URL> urls = loader.getResources(CHAINS_PATH);
+			while (urls.hasMoreElements()) {
+				addChains(compiler, urls.nextElement());
+			}
+		} catch (IOException e) {
+			logger.warning("cannot find filter chains: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * adds a filter for each line <code>description = stage | stage ...</code>
+	 * of a chain specification file, skipping empty lines and comments
+	 * starting with #. Broken lines are logged and skipped.
+	 */
+	private static void addChains(FilterChainCompiler compiler, URL url) {
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(url.openStream(), StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				line = line.trim();
+				if (line.isEmpty() || line.startsWith("#")) {
+					continue;
+				}
+				int separator = line.lastIndexOf('=');
+				if (separator < 0) {
+					logger.warning(String.format("%s: no '=' in filter chain '%s'", url, line));
+					continue;
+				}
+				try {
+					filters.add(compiler.compile(line.substring(0, separator).trim(), line.substring(separator + 1)));
+				} catch (IllegalArgumentException e) {
+					logger.warning(String.format("%s: %s", url, e.getMessage()));
+				}
+			}
+		} catch (IOException e) {
+			logger.warning(String.format("cannot read filter chains from %s: %s", url, e.getMessage()));
+		}
 	}
 
 	public static MatFilter getDefaultFilter() {
@@ -20,17 +20,20 @@
 
 package cx.uni.jk.mms.iaip.filter;
 
+import java.awt.Transparency;
+import java.awt.color.ColorSpace;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayInputStream;
-import java.io.InputStream;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.IndexColorModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
 import java.util.logging.Logger;
 
-import javax.imageio.ImageIO;
-
 import org.opencv.core.CvType;
 import org.opencv.core.Mat;
-import org.opencv.core.MatOfByte;
-import org.opencv.imgcodecs.Imgcodecs;
 
 /**
  * This class provides helper methods for converting to and from {@link Mat} 
@@ -38,6 +41,22 @@ import org.opencv.imgcodecs.Imgcodecs;
 public class MatHelper {
 	public static final Logger logger = Logger.getGlobal();
 
+	/** 8 bit conversion of non 8 bit mats, per thread */
+	private static final ThreadLocal<Mat> byteMats = new ThreadLocal<Mat>() {
+		@Override
+		protected Mat initialValue() {
+			return new Mat();
+		}
+	};
+
+	/** the bytes of a part, per thread. only grows, see partBuffer(int) */
+	private static final ThreadLocal<byte[]> partBuffers = new ThreadLocal<byte[]>() {
+		@Override
+		protected byte[] initialValue() {
+			return new byte[0];
+		}
+	};
+
 	/**
 	 * converts any mat with 1/3/4 channels to an 8 bit BufferedImage with the
 	 * same number of channels. if the input mat is not CvType.CV_8U it is
@@ -47,30 +66,134 @@ public class MatHelper {
 	 * @return the image
 	 */
 	public static BufferedImage convertMatTo8BitBufferedImage(Mat mat) {
+		return convertMatTo8BitBufferedImage(mat, null);
+	}
+
+	/**
+	 * like {@link #convertMatTo8BitBufferedImage(Mat)}, but copies the pixels
+	 * straight into the byte[] of image if image has the size and type
+	 * required, so no image is allocated per frame. 3 and 4 channel mats are
+	 * taken as BGR and BGRA, like OpenCV does.
+	 * 
+	 * @param mat
+	 * @param image
+	 *            an image returned by this method before, or null
+	 * @return image, or a new image if image does not fit
+	 */
+	public static BufferedImage convertMatTo8BitBufferedImage(Mat mat, BufferedImage image) {
+		return convertMatTo8BitBufferedImage(mat, image, null);
+	}
+
+	/**
+	 * like {@link #convertMatTo8BitBufferedImage(Mat, BufferedImage)}, but
+	 * shows one channel mats as indices into palette.
+	 * 
+	 * @param mat
+	 * @param image
+	 *            an image returned by this method before, or null
+	 * @param palette
+	 *            null for grey or colour values, see
+	 *            {@link MatFilter#getPalette()}
+	 * @return image, or a new image if image does not fit
+	 */
+	public static BufferedImage convertMatTo8BitBufferedImage(Mat mat, BufferedImage image, IndexColorModel palette) {
 		Mat byteMat;
 		if (mat.depth() != CvType.CV_8U) {
 			/** conversion to 8 bit Mat */
-			byteMat = new MatOfByte();
+			byteMat = byteMats.get();
 			mat.convertTo(byteMat, CvType.CV_8U);
 		} else {
 			byteMat = mat; // just a reference!
 		}
 
-		/** encode to .bmp file in memory */
-		MatOfByte fileMat = new MatOfByte();
-		Imgcodecs.imencode(".bmp", byteMat, fileMat);
+		int width = byteMat.cols();
+		int height = byteMat.rows();
+		int channels = byteMat.channels();
+		if (image == null || image.getWidth() != width || image.getHeight() != height
+				|| image.getRaster().getNumBands() != channels || !(image.getRaster().getDataBuffer() instanceof DataBufferByte)
+				|| (palette == null ? image.getColorModel() instanceof IndexColorModel : image.getColorModel() != palette)) {
+			image = createImage(width, height, channels, palette);
+		}
 
-		/** use file as input stream for BufferdImage */
-		byte[] byteArray = fileMat.toArray();
-		BufferedImage bufferedImage = null;
-		try {
-			InputStream in = new ByteArrayInputStream(byteArray);
-			bufferedImage = ImageIO.read(in);
-		} catch (Exception e) {
-			logger.severe(e.getStackTrace().toString());
-			System.exit(e.hashCode());
+		/** the rows of the image are as long as the rows of the mat */
+		byteMat.get(0, 0, ((DataBufferByte) image.getRaster().getDataBuffer()).getData());
+		return image;
+	}
+
+	/**
+	 * converts mat like {@link #convertMatTo8BitBufferedImage(Mat)} into a part
+	 * of image.
+	 * 
+	 * @param mat
+	 * @param image
+	 *            an image returned by
+	 *            {@link #convertMatTo8BitBufferedImage(Mat, BufferedImage)}
+	 *            with the same number of channels as mat
+	 * @param x
+	 *            left column of the part
+	 * @param y
+	 *            top row of the part
+	 */
+	public static void convertMatInto8BitBufferedImage(Mat mat, BufferedImage image, int x, int y) {
+		Mat byteMat;
+		if (mat.depth() != CvType.CV_8U) {
+			byteMat = byteMats.get();
+			mat.convertTo(byteMat, CvType.CV_8U);
+		} else {
+			byteMat = mat;
+		}
+
+		int channels = byteMat.channels();
+		int rowLength = byteMat.cols() * channels;
+		int imageRowLength = image.getWidth() * channels;
+		/** get copies no more than the mat holds, a longer buffer is fine */
+		byte[] part = partBuffer(rowLength * byteMat.rows());
+		byteMat.get(0, 0, part);
+		byte[] data = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+		for (int row = 0; row < byteMat.rows(); row++) {
+			System.arraycopy(part, row * rowLength, data, (y + row) * imageRowLength + x * channels, rowLength);
+		}
+	}
+
+	/**
+	 * @return the part buffer of the current thread, replaced by a new one if
+	 *         it is shorter than length
+	 */
+	private static byte[] partBuffer(int length) {
+		byte[] buffer = partBuffers.get();
+		if (buffer.length < length) {
+			/** get needs a multiple of the channels, 1, 3 or 4 */
+			buffer = new byte[(length + 11) / 12 * 12];
+			partBuffers.set(buffer);
 		}
+		return buffer;
+	}
 
-		return bufferedImage;
+	/**
+	 * @param palette
+	 *            for one channel, null for grey
+	 * @return an image with interleaved bytes in the order of an OpenCV mat,
+	 *         as used by the methods converting mats
+	 */
+	public static BufferedImage createImage(int width, int height, int channels, IndexColorModel palette) {
+		if (palette != null && channels == 1) {
+			return new BufferedImage(width, height, BufferedImage.TYPE_BYTE_INDEXED, palette);
+		}
+		switch (channels) {
+		case 1:
+			return new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+		case 3:
+			return new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+		case 4: {
+			/** no predefined type stores BGRA */
+			ColorModel colorModel = new ComponentColorModel(ColorSpace.getInstance(ColorSpace.CS_sRGB), true, false,
+					Transparency.TRANSLUCENT, DataBuffer.TYPE_BYTE);
+			WritableRaster raster = Raster.createInterleavedRaster(DataBuffer.TYPE_BYTE, width, height, width * 4, 4, new int[] { 2,
+					1, 0, 3 }, null);
+			return new BufferedImage(colorModel, raster, false, null);
+		}
+		default:
+			throw new IllegalArgumentException(String.format("Mats with %d channels can not be converted to images.", channels));
+		}
 	}
 }
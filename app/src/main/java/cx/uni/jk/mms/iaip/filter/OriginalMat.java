@@ -22,10 +22,12 @@ package cx.uni.jk.mms.iaip.filter;
 
 import org.opencv.core.Mat;
 
+import cx.uni.jk.mms.iaip.mat.MatStatistics;
+
 /**
  * A no-op {@link MatFilter} 
  */
-public class OriginalMat implements MatFilter {
+public class OriginalMat extends AbstractMatFilter {
 
 	/*
 	 * (non-Javadoc)
@@ -33,10 +35,15 @@ public class OriginalMat implements MatFilter {
 	 * @see filter.MatFilter#MatToBufferedImage(org.opencv.core.Mat)
 	 */
 	@Override
-	public Mat convert(Mat mat) {
+	public Mat convert(Mat mat, ValueRange range) {
 		return mat;
 	}
 
+	@Override
+	public ValueRange getValueRange(MatStatistics statistics) {
+		return ValueRange.BYTE;
+	}
+
 	/**
 	 * @return description for UI
 	 */
@@ -0,0 +1,66 @@
+/**
+ *    Copyright (C) 2015  Peter Plaimer <dct-tool@tk.jku.at>
+ *
+ *    This file is part of the program
+ *    InterActive Image Processing / Discrete Cosine Transformation (DCT) 
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cx.uni.jk.mms.iaip.filter;
+
+import java.awt.Color;
+import java.awt.image.IndexColorModel;
+
+/**
+ * Palettes of 256 colours for filters giving one index byte per value
+ * instead of the colours themselves, see {@link MatFilter#getPalette()}.
+ * 
+ * A signed magnitude index has the sign in its highest bit, set for negative
+ * values, and the magnitude 0..127 in the lower 7 bits.
+ */
+public class Palettes {
+
+	/** bit of a signed magnitude index set for negative values */
+	public static final int NEGATIVE = 0x80;
+
+	/** largest magnitude of a signed magnitude index */
+	public static final int MAX_MAGNITUDE = 0x7f;
+
+	private Palettes() {
+		/** static methods only */
+	}
+
+	/**
+	 * @param negative
+	 *            colour of the largest magnitude of negative values
+	 * @param positive
+	 *            colour of the largest magnitude of positive values
+	 * @return a palette for signed magnitude indices, running from black at
+	 *         magnitude 0 linearly to negative or positive
+	 */
+	public static IndexColorModel createSignedMagnitude(Color negative, Color positive) {
+		byte[] reds = new byte[256];
+		byte[] greens = new byte[256];
+		byte[] blues = new byte[256];
+		for (int index = 0; index < 256; index++) {
+			Color color = (index & NEGATIVE) != 0 ? negative : positive;
+			int magnitude = index & MAX_MAGNITUDE;
+			reds[index] = (byte) ((color.getRed() * magnitude + MAX_MAGNITUDE / 2) / MAX_MAGNITUDE);
+			greens[index] = (byte) ((color.getGreen() * magnitude + MAX_MAGNITUDE / 2) / MAX_MAGNITUDE);
+			blues[index] = (byte) ((color.getBlue() * magnitude + MAX_MAGNITUDE / 2) / MAX_MAGNITUDE);
+		}
+		return new IndexColorModel(8, 256, reds, greens, blues);
+	}
+}
@@ -0,0 +1,104 @@
+/**
+ *    Copyright (C) 2015  Peter Plaimer <dct-tool@tk.jku.at>
+ *
+ *    This file is part of the program
+ *    InterActive Image Processing / Discrete Cosine Transformation (DCT) 
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cx.uni.jk.mms.iaip.filter;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfByte;
+
+import cx.uni.jk.mms.iaip.mat.MatStatistics;
+
+/**
+ * A {@link MatFilter} which stretches the values between two percentiles to
+ * grey, clipping the values outside. Unlike
+ * {@link GreyAutoContrastBrightness} a few outliers, e.g. the DC coefficient
+ * of a frequency mat, do not crush all other values to black.
+ * 
+ * The percentiles are found in the histogram of {@link MatStatistics}, which
+ * is kept up to date from the changed areas, so no values are sorted.
+ */
+public class PercentileAutoContrast extends AbstractMatFilter {
+
+	/** fraction of the values clipped to black */
+	private final double lowerFraction;
+
+	/** fraction of the values clipped to white */
+	private final double upperFraction;
+
+	/**
+	 * clips 1 % of the values at each end
+	 */
+	public PercentileAutoContrast() {
+		this(0.01d, 0.01d);
+	}
+
+	/**
+	 * @param lowerFraction
+	 *            0..1 of the values clipped to black
+	 * @param upperFraction
+	 *            0..1 of the values clipped to white
+	 */
+	public PercentileAutoContrast(double lowerFraction, double upperFraction) {
+		super();
+		this.lowerFraction = lowerFraction;
+		this.upperFraction = upperFraction;
+	}
+
+	@Override
+	public Mat convert(Mat mat, ValueRange range) {
+		/** conversion to 8 bit Mat, saturating outside of the range */
+		Mat byteMat = new MatOfByte();
+		mat.convertTo(byteMat, CvType.CV_8U, range.getAlpha(), range.getBeta());
+
+		return byteMat;
+	}
+
+	/**
+	 * the range runs from the lower bound of the bin of the lower percentile to
+	 * the upper bound of the bin of the upper percentile, so it changes only
+	 * if a percentile moves into another bin, and not with every brush
+	 * stroke.
+	 */
+	@Override
+	public ValueRange getValueRange(MatStatistics statistics) {
+		int lowerBin = statistics.getQuantileBin(this.lowerFraction);
+		int upperBin = statistics.getQuantileBin(1.0d - this.upperFraction);
+		if (lowerBin == upperBin) {
+			/**
+			 * most values are the same, e.g. zeros, or too close to tell them
+			 * apart in the histogram, stretch all of them
+			 */
+			return new ValueRange(statistics.getMin(), statistics.getMax());
+		}
+		double max = upperBin < MatStatistics.BINS - 1 ? MatStatistics.lowerBoundOf(upperBin + 1) : statistics.getMax();
+		return new ValueRange(MatStatistics.lowerBoundOf(lowerBin), max);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Auto contrast %s..%s %% grey", format(100.0d * this.lowerFraction),
+				format(100.0d * (1.0d - this.upperFraction)));
+	}
+
+	private static String format(double percent) {
+		return percent == Math.rint(percent) ? String.valueOf((long) percent) : String.valueOf(percent);
+	}
+}
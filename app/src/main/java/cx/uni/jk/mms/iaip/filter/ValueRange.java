@@ -0,0 +1,82 @@
+/**
+ *    Copyright (C) 2015  Peter Plaimer <dct-tool@tk.jku.at>
+ *
+ *    This file is part of the program
+ *    InterActive Image Processing / Discrete Cosine Transformation (DCT) 
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cx.uni.jk.mms.iaip.filter;
+
+/**
+ * The range of values a {@link MatFilter} maps to 0..255, as found in the
+ * whole mat. Immutable.
+ */
+public final class ValueRange {
+	/** the range of 8 bit values, which are kept as they are */
+	public static final ValueRange BYTE = new ValueRange(0.0d, 256.0d);
+
+	private final double min;
+	private final double max;
+
+	public ValueRange(double min, double max) {
+		super();
+		this.min = min;
+		this.max = max;
+	}
+
+	public double getMin() {
+		return this.min;
+	}
+
+	public double getMax() {
+		return this.max;
+	}
+
+	/**
+	 * @return factor for <code>Mat.convertTo()</code> mapping this range to
+	 *         0..256
+	 */
+	public double getAlpha() {
+		return 256.0d / (this.max - this.min);
+	}
+
+	/**
+	 * @return offset for <code>Mat.convertTo()</code> mapping this range to
+	 *         0..256
+	 */
+	public double getBeta() {
+		return -this.min * this.getAlpha();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof ValueRange)) {
+			return false;
+		}
+		ValueRange other = (ValueRange) obj;
+		return Double.compare(this.min, other.min) == 0 && Double.compare(this.max, other.max) == 0;
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * Double.valueOf(this.min).hashCode() + Double.valueOf(this.max).hashCode();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("[%f, %f]", this.min, this.max);
+	}
+}
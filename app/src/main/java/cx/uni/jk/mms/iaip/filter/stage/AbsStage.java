@@ -0,0 +1,55 @@
+/**
+ *    Copyright (C) 2015  Peter Plaimer <dct-tool@tk.jku.at>
+ *
+ *    This file is part of the program
+ *    InterActive Image Processing / Discrete Cosine Transformation (DCT) 
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cx.uni.jk.mms.iaip.filter.stage;
+
+import cx.uni.jk.mms.iaip.filter.ValueRange;
+
+/**
+ * {@link FilterStage} giving the absolute values.
+ */
+public class AbsStage extends AbstractFilterStage {
+
+	@Override
+	public String getName() {
+		return "abs";
+	}
+
+	/**
+	 * the smallest absolute value is 0 if the range contains 0, else the one
+	 * of the bound nearer to 0
+	 */
+	@Override
+	public ValueRange mapRange(ValueRange range) {
+		double min = Math.abs(range.getMin());
+		double max = Math.abs(range.getMax());
+		if (range.getMin() <= 0.0d && range.getMax() >= 0.0d) {
+			return new ValueRange(0.0d, Math.max(min, max));
+		}
+		return new ValueRange(Math.min(min, max), Math.max(min, max));
+	}
+
+	@Override
+	public void apply(float[] values, float[] original, ValueRange range) {
+		for (int i = 0; i < values.length; i++) {
+			values[i] = Math.abs(values[i]);
+		}
+	}
+}
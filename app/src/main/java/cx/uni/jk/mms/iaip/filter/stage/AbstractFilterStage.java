@@ -0,0 +1,42 @@
+/**
+ *    Copyright (C) 2015  Peter Plaimer <dct-tool@tk.jku.at>
+ *
+ *    This file is part of the program
+ *    InterActive Image Processing / Discrete Cosine Transformation (DCT) 
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cx.uni.jk.mms.iaip.filter.stage;
+
+import java.awt.image.IndexColorModel;
+
+/**
+ * Common methods of {@link FilterStage}s.
+ */
+public abstract class AbstractFilterStage implements FilterStage {
+
+	/**
+	 * @return null, plain values by default
+	 */
+	@Override
+	public IndexColorModel getPalette() {
+		return null;
+	}
+
+	@Override
+	public String toString() {
+		return this.getName();
+	}
+}
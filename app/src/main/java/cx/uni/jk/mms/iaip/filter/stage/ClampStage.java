@@ -0,0 +1,50 @@
+/**
+ *    Copyright (C) 2015  Peter Plaimer <dct-tool@tk.jku.at>
+ *
+ *    This file is part of the program
+ *    InterActive Image Processing / Discrete Cosine Transformation (DCT) 
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cx.uni.jk.mms.iaip.filter.stage;
+
+import cx.uni.jk.mms.iaip.filter.ValueRange;
+
+/**
+ * {@link FilterStage} clipping values to 0..255, like
+ * {@link cx.uni.jk.mms.iaip.filter.OriginalMat} shows them.
+ */
+public class ClampStage extends AbstractFilterStage {
+
+	private static final float MAX = 255.0f;
+
+	@Override
+	public String getName() {
+		return "clamp";
+	}
+
+	@Override
+	public ValueRange mapRange(ValueRange range) {
+		return new ValueRange(Math.min(Math.max(range.getMin(), 0.0d), MAX), Math.min(Math.max(range.getMax(), 0.0d), MAX));
+	}
+
+	@Override
+	public void apply(float[] values, float[] original, ValueRange range) {
+		for (int i = 0; i < values.length; i++) {
+			float value = values[i];
+			values[i] = value < 0.0f ? 0.0f : value > MAX ? MAX : value;
+		}
+	}
+}
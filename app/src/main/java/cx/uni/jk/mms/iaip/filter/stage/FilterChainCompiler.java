@@ -0,0 +1,98 @@
+/**
+ *    Copyright (C) 2015  Peter Plaimer <dct-tool@tk.jku.at>
+ *
+ *    This file is part of the program
+ *    InterActive Image Processing / Discrete Cosine Transformation (DCT) 
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cx.uni.jk.mms.iaip.filter.stage;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.logging.Logger;
+
+import cx.uni.jk.mms.iaip.filter.ValueRange;
+
+/**
+ * Compiles chain specifications like <code>abs | log1p | normalise</code>
+ * into {@link StageChainFilter}s, from the {@link FilterStage}s found by
+ * {@link ServiceLoader}.
+ */
+public class FilterChainCompiler {
+
+	/** separates the stage names of a chain specification */
+	public static final String SEPARATOR = "|";
+
+	/** the range of all finite float values, any mat may hold */
+	private static final ValueRange ALL_VALUES = new ValueRange(-Float.MAX_VALUE, Float.MAX_VALUE);
+
+	private static Logger logger = Logger.getGlobal();
+
+	private final Map<String, FilterStage> stages = new LinkedHashMap<>();
+
+	/**
+	 * @param loader
+	 *            finds the stages, the first one of each name is used
+	 */
+	public FilterChainCompiler(ClassLoader loader) {
+		super();
+		for (FilterStage stage : ServiceLoader.load(FilterStage.class, loader)) {
+			if (this.stages.containsKey(stage.getName())) {
+				logger.warning(String.format("ignoring %s, filter stage %s exists", stage.getClass().getName(), stage.getName()));
+			} else {
+				this.stages.put(stage.getName(), stage);
+			}
+		}
+	}
+
+	/**
+	 * @param name
+	 *            description of the filter for UI
+	 * @param specification
+	 *            names of the stages separated by {@link #SEPARATOR}
+	 * @return the filter applying the stages in the given order
+	 * @throws IllegalArgumentException
+	 *             if the specification is empty, names an unknown stage or a
+	 *             stage undefined for the values given to it, like log1p for
+	 *             values below -1
+	 */
+	public StageChainFilter compile(String name, String specification) {
+		List<FilterStage> chain = new ArrayList<>();
+		for (String stageName : specification.split("\\" + SEPARATOR)) {
+			stageName = stageName.trim();
+			FilterStage stage = this.stages.get(stageName);
+			if (stage == null) {
+				throw new IllegalArgumentException(String.format("unknown filter stage '%s' in '%s', known are %s", stageName, specification,
+						this.stages.keySet()));
+			}
+			chain.add(stage);
+		}
+		StageChainFilter filter = new StageChainFilter(name, chain.toArray(new FilterStage[chain.size()]));
+
+		/** a stage undefined for any float value would show some mats black */
+		ValueRange[] ranges = filter.getStageRanges(ALL_VALUES);
+		for (int s = 1; s < ranges.length; s++) {
+			if (Double.isNaN(ranges[s].getMin()) || Double.isNaN(ranges[s].getMax())) {
+				throw new IllegalArgumentException(String.format("filter stage '%s' in '%s' is undefined for some values of %s", chain.get(s - 1)
+						.getName(), specification, ranges[s - 1]));
+			}
+		}
+		return filter;
+	}
+}
@@ -0,0 +1,68 @@
+/**
+ *    Copyright (C) 2015  Peter Plaimer <dct-tool@tk.jku.at>
+ *
+ *    This file is part of the program
+ *    InterActive Image Processing / Discrete Cosine Transformation (DCT) 
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cx.uni.jk.mms.iaip.filter.stage;
+
+import java.awt.image.IndexColorModel;
+
+import cx.uni.jk.mms.iaip.filter.ValueRange;
+
+/**
+ * One step of a display mapping, applied to the values of a row in place. A
+ * {@link FilterChainCompiler} composes stages by name into a
+ * {@link StageChainFilter}, the last stage leaves values 0..255 which are
+ * rounded to bytes.
+ * 
+ * Implementations are found by {@link java.util.ServiceLoader}, listed in
+ * <code>META-INF/services/cx.uni.jk.mms.iaip.filter.stage.FilterStage</code>
+ * of any jar on the class path, and need a public no-arg constructor. Stages
+ * are shared by all chains and threads and must not keep state.
+ */
+public interface FilterStage {
+
+	/**
+	 * @return the name of the stage in chain specifications
+	 */
+	public String getName();
+
+	/**
+	 * @param range
+	 *            of the values given to this stage in the whole mat
+	 * @return the range of the values this stage gives for them
+	 */
+	public ValueRange mapRange(ValueRange range);
+
+	/**
+	 * @param values
+	 *            one row as given by the previous stage, replaced by the
+	 *            results
+	 * @param original
+	 *            the same row as read from the mat
+	 * @param range
+	 *            of the values given to this stage in the whole mat
+	 */
+	public void apply(float[] values, float[] original, ValueRange range);
+
+	/**
+	 * @return the colours of the indices this stage gives, or null if it
+	 *         gives plain values
+	 */
+	public IndexColorModel getPalette();
+}
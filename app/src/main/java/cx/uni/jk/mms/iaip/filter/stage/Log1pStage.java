@@ -0,0 +1,48 @@
+/**
+ *    Copyright (C) 2015  Peter Plaimer <dct-tool@tk.jku.at>
+ *
+ *    This file is part of the program
+ *    InterActive Image Processing / Discrete Cosine Transformation (DCT) 
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cx.uni.jk.mms.iaip.filter.stage;
+
+import cx.uni.jk.mms.iaip.filter.ValueRange;
+
+/**
+ * {@link FilterStage} giving log(1 + v), which is defined for v > -1 only, so
+ * it usually follows an {@link AbsStage}.
+ */
+public class Log1pStage extends AbstractFilterStage {
+
+	@Override
+	public String getName() {
+		return "log1p";
+	}
+
+	/** log(1 + v) grows with v */
+	@Override
+	public ValueRange mapRange(ValueRange range) {
+		return new ValueRange(Math.log1p(range.getMin()), Math.log1p(range.getMax()));
+	}
+
+	@Override
+	public void apply(float[] values, float[] original, ValueRange range) {
+		for (int i = 0; i < values.length; i++) {
+			values[i] = (float) Math.log1p(values[i]);
+		}
+	}
+}
@@ -0,0 +1,50 @@
+/**
+ *    Copyright (C) 2015  Peter Plaimer <dct-tool@tk.jku.at>
+ *
+ *    This file is part of the program
+ *    InterActive Image Processing / Discrete Cosine Transformation (DCT) 
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cx.uni.jk.mms.iaip.filter.stage;
+
+import cx.uni.jk.mms.iaip.filter.ValueRange;
+
+/**
+ * {@link FilterStage} mapping the range of its values in the whole mat
+ * linearly to 0..256, as {@link ValueRange#getAlpha()} and
+ * {@link ValueRange#getBeta()} do for the other filters.
+ */
+public class NormaliseStage extends AbstractFilterStage {
+
+	@Override
+	public String getName() {
+		return "normalise";
+	}
+
+	@Override
+	public ValueRange mapRange(ValueRange range) {
+		return ValueRange.BYTE;
+	}
+
+	@Override
+	public void apply(float[] values, float[] original, ValueRange range) {
+		float alpha = (float) range.getAlpha();
+		float beta = (float) range.getBeta();
+		for (int i = 0; i < values.length; i++) {
+			values[i] = values[i] * alpha + beta;
+		}
+	}
+}
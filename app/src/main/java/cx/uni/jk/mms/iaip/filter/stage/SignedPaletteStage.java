@@ -0,0 +1,67 @@
+/**
+ *    Copyright (C) 2015  Peter Plaimer <dct-tool@tk.jku.at>
+ *
+ *    This file is part of the program
+ *    InterActive Image Processing / Discrete Cosine Transformation (DCT) 
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cx.uni.jk.mms.iaip.filter.stage;
+
+import java.awt.Color;
+import java.awt.image.IndexColorModel;
+
+import cx.uni.jk.mms.iaip.filter.Palettes;
+import cx.uni.jk.mms.iaip.filter.ValueRange;
+
+/**
+ * {@link FilterStage} giving signed magnitude indices of {@link Palettes} for
+ * values 0..255, with the sign of the original value. Usually the last stage
+ * of a chain, after a {@link NormaliseStage}.
+ */
+public abstract class SignedPaletteStage extends AbstractFilterStage {
+
+	private final IndexColorModel palette;
+
+	/**
+	 * @param negative
+	 *            colour of the largest magnitude of negative values
+	 * @param positive
+	 *            colour of the largest magnitude of positive values
+	 */
+	protected SignedPaletteStage(Color negative, Color positive) {
+		super();
+		this.palette = Palettes.createSignedMagnitude(negative, positive);
+	}
+
+	@Override
+	public ValueRange mapRange(ValueRange range) {
+		return ValueRange.BYTE;
+	}
+
+	@Override
+	public void apply(float[] values, float[] original, ValueRange range) {
+		for (int i = 0; i < values.length; i++) {
+			int value = (int) (values[i] + 0.5f);
+			int magnitude = (value < 0 ? 0 : value > 255 ? 255 : value) >> 1;
+			values[i] = original[i] < 0.0f ? Palettes.NEGATIVE | magnitude : magnitude;
+		}
+	}
+
+	@Override
+	public IndexColorModel getPalette() {
+		return this.palette;
+	}
+}
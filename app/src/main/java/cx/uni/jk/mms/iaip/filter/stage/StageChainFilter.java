@@ -0,0 +1,137 @@
+/**
+ *    Copyright (C) 2015  Peter Plaimer <dct-tool@tk.jku.at>
+ *
+ *    This file is part of the program
+ *    InterActive Image Processing / Discrete Cosine Transformation (DCT) 
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cx.uni.jk.mms.iaip.filter.stage;
+
+import java.awt.image.IndexColorModel;
+
+import cx.uni.jk.mms.iaip.filter.AbstractRowFilter;
+import cx.uni.jk.mms.iaip.filter.ValueRange;
+import cx.uni.jk.mms.iaip.mat.MatStatistics;
+
+/**
+ * A {@link cx.uni.jk.mms.iaip.filter.MatFilter} applying a chain of
+ * {@link FilterStage}s, as compiled by {@link FilterChainCompiler}.
+ * 
+ * The stages are fused into the one pass over the mat of
+ * {@link AbstractRowFilter}: each row runs through all stages while it is in
+ * the cache. No stage makes a temporary mat.
+ */
+public class StageChainFilter extends AbstractRowFilter {
+
+	/** the values given by the stages, next to the row read */
+	private static final ThreadLocal<float[]> stageBuffers = new ThreadLocal<float[]>() {
+		@Override
+		protected float[] initialValue() {
+			return new float[0];
+		}
+	};
+
+	private final String name;
+
+	private final FilterStage[] stages;
+
+	private final IndexColorModel palette;
+
+	/**
+	 * @param name
+	 *            description for UI
+	 * @param stages
+	 *            applied in this order, the last one leaves values 0..255
+	 */
+	public StageChainFilter(String name, FilterStage[] stages) {
+		super();
+		this.name = name;
+		this.stages = stages.clone();
+
+		/** the indices of the last stage giving indices are kept */
+		IndexColorModel lastPalette = null;
+		for (FilterStage stage : stages) {
+			if (stage.getPalette() != null) {
+				lastPalette = stage.getPalette();
+			}
+		}
+		this.palette = lastPalette;
+	}
+
+	@Override
+	protected int getChannels() {
+		return 1;
+	}
+
+	@Override
+	protected RowKernel createKernel(ValueRange range) {
+		final ValueRange[] ranges = this.getStageRanges(range);
+		return new RowKernel() {
+			@Override
+			public void convertRow(float[] original, byte[] bytes) {
+				float[] values = rowBuffer(stageBuffers, original.length);
+				System.arraycopy(original, 0, values, 0, original.length);
+				FilterStage[] chain = StageChainFilter.this.stages;
+				for (int s = 0; s < chain.length; s++) {
+					chain[s].apply(values, original, ranges[s]);
+				}
+				for (int i = 0; i < values.length; i++) {
+					/** NaN gives 0 */
+					int value = (int) (values[i] + 0.5f);
+					bytes[i] = (byte) (value < 0 ? 0 : value > 255 ? 255 : value);
+				}
+			}
+		};
+	}
+
+	/**
+	 * the stages find their ranges from this one, so it is just the range of
+	 * the mat values
+	 */
+	@Override
+	public ValueRange getValueRange(MatStatistics statistics) {
+		return new ValueRange(statistics.getMin(), statistics.getMax());
+	}
+
+	@Override
+	public IndexColorModel getPalette() {
+		return this.palette;
+	}
+
+	/**
+	 * @param range
+	 *            of the values of the whole mat
+	 * @return the range of the values given to each stage in the whole mat,
+	 *         and the range of the values given by the last stage
+	 */
+	ValueRange[] getStageRanges(ValueRange range) {
+		ValueRange[] ranges = new ValueRange[this.stages.length + 1];
+		for (int s = 0; s < this.stages.length; s++) {
+			ranges[s] = range;
+			range = this.stages[s].mapRange(range);
+		}
+		ranges[this.stages.length] = range;
+		return ranges;
+	}
+
+	/**
+	 * @return description for UI
+	 */
+	@Override
+	public String toString() {
+		return this.name;
+	}
+}
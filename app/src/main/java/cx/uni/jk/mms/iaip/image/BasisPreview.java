@@ -0,0 +1,140 @@
+/**
+ *    Copyright (C) 2015  Peter Plaimer <dct-tool@tk.jku.at>
+ *
+ *    This file is part of the program
+ *    InterActive Image Processing / Discrete Cosine Transformation (DCT) 
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cx.uni.jk.mms.iaip.image;
+
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+
+import javax.swing.JComponent;
+
+import cx.uni.jk.mms.iaip.dct.BasisAtlas;
+
+/**
+ * Shows the spatial basis image of one DCT coefficient in grey, -1 black, 0
+ * mid grey and 1 white, e.g. the one under the mouse in a frequency view.
+ * 
+ * The image is composed from the row and column vectors of
+ * {@link BasisAtlas}es at the resolution it is shown in, into the same
+ * pixels every time, so showing another coefficient allocates nothing.
+ */
+public class BasisPreview extends JComponent {
+	private static final long serialVersionUID = -3092473859227716482L;
+
+	/** edge length in pixels of the longer side of the basis image */
+	public static final int SIZE = 64;
+
+	private final BufferedImage image = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_BYTE_GRAY);
+	private final byte[] pixels = ((DataBufferByte) this.image.getRaster().getDataBuffer()).getData();
+
+	/** size of the basis image inside image, 0 if none is shown */
+	private int width = 0;
+	private int height = 0;
+
+	/** the atlases used last, for the columns and rows */
+	private BasisAtlas colAtlas = null;
+	private BasisAtlas rowAtlas = null;
+
+	/** the coefficient shown */
+	private int u = -1;
+	private int v = -1;
+	private int cols = 0;
+	private int rows = 0;
+
+	public BasisPreview() {
+		super();
+		this.setPreferredSize(new Dimension(SIZE, SIZE));
+		this.setMinimumSize(this.getPreferredSize());
+	}
+
+	/**
+	 * shows the basis image of coefficient (u, v) of a block of cols x rows
+	 * coefficients.
+	 * 
+	 * @param u
+	 *            column of the coefficient, 0..cols - 1
+	 * @param v
+	 *            row of the coefficient, 0..rows - 1
+	 * @param cols
+	 * @param rows
+	 */
+	public void showCoefficient(int u, int v, int cols, int rows) {
+		if (u == this.u && v == this.v && cols == this.cols && rows == this.rows) {
+			return;
+		}
+		this.u = u;
+		this.v = v;
+		this.cols = cols;
+		this.rows = rows;
+
+		/** keep the aspect ratio of the block */
+		int longer = Math.max(cols, rows);
+		this.width = Math.max(1, (int) ((long) SIZE * cols / longer));
+		this.height = Math.max(1, (int) ((long) SIZE * rows / longer));
+		this.colAtlas = atlas(this.colAtlas, cols, this.width);
+		this.rowAtlas = atlas(this.rowAtlas, rows, this.height);
+		float[] colVector = this.colAtlas.getVector(u);
+		float[] rowVector = this.rowAtlas.getVector(v);
+
+		for (int y = 0; y < this.height; y++) {
+			float rowValue = 127.0f * rowVector[y];
+			int index = y * SIZE;
+			for (int x = 0; x < this.width; x++) {
+				this.pixels[index++] = (byte) (128.5f + rowValue * colVector[x]);
+			}
+		}
+		this.repaint();
+	}
+
+	/**
+	 * @return last if it has the given lengths, else the shared atlas for them
+	 */
+	private static BasisAtlas atlas(BasisAtlas last, int length, int displayLength) {
+		if (last != null && last.getLength() == length && last.getDisplayLength() == displayLength) {
+			return last;
+		}
+		return BasisAtlas.forLengths(length, displayLength);
+	}
+
+	/**
+	 * shows nothing, e.g. when the mouse left the coefficients
+	 */
+	public void clear() {
+		this.u = -1;
+		this.v = -1;
+		this.cols = 0;
+		this.rows = 0;
+		this.width = 0;
+		this.height = 0;
+		this.repaint();
+	}
+
+	@Override
+	protected void paintComponent(Graphics g) {
+		super.paintComponent(g);
+		if (this.width > 0 && this.height > 0) {
+			int x = (this.getWidth() - this.width) / 2;
+			int y = (this.getHeight() - this.height) / 2;
+			g.drawImage(this.image, x, y, x + this.width, y + this.height, 0, 0, this.width, this.height, null);
+		}
+	}
+}
@@ -22,12 +22,11 @@ package cx.uni.jk.mms.iaip.image;
 
 import java.awt.image.BufferedImage;
 import java.io.File;
-import java.io.IOException;
-
-import javax.imageio.ImageIO;
 
 import org.opencv.core.Rect;
 
+import cx.uni.jk.mms.iaip.export.PngEncoder;
+import cx.uni.jk.mms.iaip.export.PngExportTask;
 import cx.uni.jk.mms.iaip.main.AbstractMatController;
 import cx.uni.jk.mms.iaip.main.AbstractMatView;
 import cx.uni.jk.mms.iaip.main.MainController;
@@ -62,11 +61,15 @@ public class ImageController extends AbstractMatController {
 	 * saves an image to a .png file, no matter if it fits the extension.
 	 * 
 	 * @param image
+	 *            copied at once, so it may change afterwards
 	 * @param file
-	 * @throws IOException
+	 * @param level
+	 *            of compression, see {@link PngEncoder#PngEncoder(int)}
+	 * @return the task encoding a copy of image off the event dispatch thread,
+	 *         to be started
 	 */
-	public void saveImage(BufferedImage image, File file) throws IOException {
-		ImageIO.write(image, "png", file);
+	public PngExportTask saveImage(BufferedImage image, File file, int level) {
+		return new PngExportTask(image, file, level);
 	}
 
 	/**
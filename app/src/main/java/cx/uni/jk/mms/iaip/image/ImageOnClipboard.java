@@ -36,7 +36,9 @@ import java.io.IOException;
 public class ImageOnClipboard implements ClipboardOwner {
 
 	public ImageOnClipboard(BufferedImage image) {
-		Toolkit.getDefaultToolkit().getSystemClipboard().setContents(new TransferableImage(image), this);
+		/** the image shown may be overwritten while on the clipboard */
+		BufferedImage copy = new BufferedImage(image.getColorModel(), image.copyData(null), image.isAlphaPremultiplied(), null);
+		Toolkit.getDefaultToolkit().getSystemClipboard().setContents(new TransferableImage(copy), this);
 	}
 
 	/*
@@ -26,11 +26,14 @@ import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.Panel;
 import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseWheelEvent;
 import java.awt.geom.AffineTransform;
 import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.logging.Logger;
@@ -38,10 +41,10 @@ import java.util.logging.Logger;
 import javax.swing.JPanel;
 
 import org.opencv.core.Mat;
+import org.opencv.core.Rect;
 
 import cx.uni.jk.mms.iaip.filter.MatFilter;
 import cx.uni.jk.mms.iaip.filter.MatFilterManager;
-import cx.uni.jk.mms.iaip.filter.MatHelper;
 import cx.uni.jk.mms.iaip.mat.MatChangeEvent;
 import cx.uni.jk.mms.iaip.mat.MatChangeListener;
 import cx.uni.jk.mms.iaip.mat.MatModel;
@@ -64,7 +67,17 @@ public class ImagePanel extends JPanel {
 	private BufferedImage image = null;
 	private double scale = 1.0d;
 
+	/** the scaled image, covering scaledArea of this panel */
+	private VolatileImage scaledImage = null;
+	private Rectangle scaledArea = null;
+	/** false if all of scaledImage is to be scaled again */
+	private boolean scaledValid = false;
+	/** part of scaledArea to be scaled again, null for none */
+	private Rectangle scaledDirty = null;
+
 	private MatFilter matFilter;
+	/** the image of matModel and matFilter, shared with other panels */
+	private RenderCache.Entry rendering;
 
 	private List<PixelChangeListener> pixelChangeListeners = new CopyOnWriteArrayList<>();
 	private MouseAdapterScaling mouseScaler;
@@ -78,6 +91,7 @@ public class ImagePanel extends JPanel {
 
 		this.matModel.addMatChangeListener(this.matChangeListener);
 		this.matFilter = MatFilterManager.getDefaultFilter();
+		this.rendering = RenderCache.acquire(this.matModel, this.matFilter, this.frameListener);
 
 		/**
 		 * all mouse event coordinates will be scaled down, reversing the
@@ -105,10 +119,26 @@ public class ImagePanel extends JPanel {
 	}
 
 	public void setMatFilter(MatFilter matFilter) {
-		this.matFilter = matFilter;
+		if (matFilter != this.matFilter) {
+			RenderCache.release(this.rendering, this.frameListener);
+			this.matFilter = matFilter;
+			this.rendering = RenderCache.acquire(this.matModel, this.matFilter, this.frameListener);
+		}
 		this.updateImageFromMat();
 	}
 
+	/**
+	 * stops following the model and releases the image shared with other
+	 * panels, when this panel is not used any more.
+	 */
+	public void dispose() {
+		if (this.rendering != null) {
+			this.matModel.removeMatChangeListener(this.matChangeListener);
+			RenderCache.release(this.rendering, this.frameListener);
+			this.rendering = null;
+		}
+	}
+
 	@Override
 	public Dimension getPreferredSize() {
 		if (this.image == null) {
@@ -130,6 +160,7 @@ public class ImagePanel extends JPanel {
 
 	private void setImage(BufferedImage image) {
 		this.image = image;
+		this.scaledArea = null;
 
 		this.revalidate();
 		this.repaint();
@@ -138,27 +169,186 @@ public class ImagePanel extends JPanel {
 	public void setScale(double scale) {
 		this.scale = scale;
 		this.mouseScaler.setScale(scale);
+		this.scaledArea = null;
 
 		this.revalidate();
 		this.repaint();
 	}
 
+	/**
+	 * blits the visible part of the image from {@link #scaledImage}, which is
+	 * scaled again only after zooming, scrolling too far or a change of the
+	 * image. Without an accelerated image, e.g. when headless, the image is
+	 * scaled on each repaint.
+	 */
 	@Override
 	protected void paintComponent(Graphics g) {
 		Graphics2D g2d = (Graphics2D) g;
+		if (this.image == null || this.getGraphicsConfiguration() == null) {
+			this.drawScaledImage(g2d, new Rectangle(0, 0, this.getWidth(), this.getHeight()));
+			return;
+		}
+
+		Rectangle visible = this.getVisibleRect();
+		if (this.scaledArea == null || !this.scaledArea.contains(visible)) {
+			/** a margin of half the visible size around it, so scrolling a bit just blits */
+			this.scaledArea = new Rectangle(visible.x - visible.width / 2, visible.y - visible.height / 2, visible.width * 2,
+					visible.height * 2).intersection(new Rectangle(0, 0, this.getWidth(), this.getHeight()));
+			this.scaledValid = false;
+			this.scaledDirty = null;
+		}
+		if (this.scaledArea.isEmpty()) {
+			return;
+		}
+
+		do {
+			int status = this.scaledImage == null || this.scaledImage.getWidth() != this.scaledArea.width
+					|| this.scaledImage.getHeight() != this.scaledArea.height ? VolatileImage.IMAGE_INCOMPATIBLE : this.scaledImage
+					.validate(this.getGraphicsConfiguration());
+			if (status == VolatileImage.IMAGE_INCOMPATIBLE) {
+				if (this.scaledImage != null) {
+					this.scaledImage.flush();
+				}
+				this.scaledImage = this.createVolatileImage(this.scaledArea.width, this.scaledArea.height);
+				this.scaledValid = false;
+				if (this.scaledImage == null) {
+					this.drawScaledImage(g2d, new Rectangle(0, 0, this.getWidth(), this.getHeight()));
+					return;
+				}
+			} else if (status == VolatileImage.IMAGE_RESTORED) {
+				this.scaledValid = false;
+			}
+
+			Rectangle scaledDirty = this.scaledValid ? this.scaledDirty : this.scaledArea;
+			if (scaledDirty != null) {
+				Graphics2D scaledGraphics = this.scaledImage.createGraphics();
+				scaledGraphics.translate(-this.scaledArea.x, -this.scaledArea.y);
+				scaledGraphics.setClip(scaledDirty);
+				this.drawScaledImage(scaledGraphics, scaledDirty);
+				scaledGraphics.dispose();
+				this.scaledValid = true;
+				this.scaledDirty = null;
+			}
+			g2d.drawImage(this.scaledImage, this.scaledArea.x, this.scaledArea.y, null);
+		} while (this.scaledImage.contentsLost());
+	}
+
+	/**
+	 * draws the image scaled with nearest neighbour interpolation.
+	 * 
+	 * @param g2d
+	 * @param area
+	 *            to be drawn at least, in coordinates of this panel
+	 */
+	private void drawScaledImage(Graphics2D g2d, Rectangle area) {
 		g2d.setColor(Color.GRAY);
-		g2d.fillRect(0, 0, this.getWidth(), this.getHeight());
-		if (this.image != null) {
-			AffineTransform at = new AffineTransform();
-			at.scale(this.scale, this.scale);
+		g2d.fill(area);
+		if (this.image == null) {
+			return;
+		}
+		g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+		AffineTransform at = new AffineTransform();
+		at.scale(this.scale, this.scale);
+		if (this.rendering == null) {
 			g2d.drawImage(this.image, at, null);
+			return;
 		}
+
+		int level = ImagePyramid.getLevelForScale(this.scale);
+		if (level > 0) {
+			/** zoomed out, draw a smaller image of the pyramid instead of resampling all pixels */
+			BufferedImage levelImage = this.rendering.getImage(level);
+			if (levelImage == null) {
+				return;
+			}
+			at.scale((double) this.image.getWidth() / levelImage.getWidth(), (double) this.image.getHeight() / levelImage.getHeight());
+			g2d.drawImage(levelImage, at, null);
+		} else {
+			/** zoomed in, request and draw only the tiles inside the area */
+			Rect imageArea = this.toImageArea(area);
+			BufferedImage image = this.rendering.getImage(imageArea);
+			int x = Math.max(imageArea.x, 0);
+			int y = Math.max(imageArea.y, 0);
+			int width = Math.min(imageArea.x + imageArea.width, image.getWidth()) - x;
+			int height = Math.min(imageArea.y + imageArea.height, image.getHeight()) - y;
+			if (width > 0 && height > 0) {
+				at.translate(x, y);
+				g2d.drawImage(image.getSubimage(x, y, width, height), at, null);
+			}
+		}
+	}
+
+	/**
+	 * @param screenArea
+	 *            in coordinates of this panel
+	 * @return the pixels of the image shown in screenArea, may reach outside
+	 *         the image
+	 */
+	private Rect toImageArea(Rectangle screenArea) {
+		int x = (int) Math.floor(screenArea.x / this.scale);
+		int y = (int) Math.floor(screenArea.y / this.scale);
+		int xEnd = (int) Math.ceil((screenArea.x + screenArea.width) / this.scale) + 1;
+		int yEnd = (int) Math.ceil((screenArea.y + screenArea.height) / this.scale) + 1;
+		return new Rect(x, y, xEnd - x, yEnd - y);
 	}
 
 	public void updateImageFromMat() {
-		this.setImage(MatHelper.convertMatTo8BitBufferedImage(this.matFilter.convert(this.matModel.getMat())));
+		this.rendering.update(null);
+		this.setImage(this.rendering.getImage(this.toImageArea(this.getVisibleRect())));
+	}
+
+	/**
+	 * brings the shared image up to date, requesting a frame for the changed
+	 * area of the mat as far as it is visible. The changed area is repainted
+	 * when the frame is ready.
+	 * 
+	 * @param changedArea
+	 *            null for all
+	 */
+	public void updateImageFromMat(Rect changedArea) {
+		this.rendering.update(changedArea);
+		BufferedImage image = this.rendering.getImage(this.toImageArea(this.getVisibleRect()));
+		if (this.rendering.getChangedArea() == null || image != this.image) {
+			this.setImage(image);
+		}
+	}
+
+	/**
+	 * scales area of the image again and repaints it.
+	 * 
+	 * @param area
+	 */
+	private void repaintImageArea(Rect area) {
+		/** the area widened to whole pixels of the pyramid level drawn, scaled and widened to whole screen pixels */
+		int cell = 1 << ImagePyramid.getLevelForScale(this.scale);
+		int x = area.x / cell * cell;
+		int y = area.y / cell * cell;
+		int xEnd = (area.x + area.width + cell - 1) / cell * cell;
+		int yEnd = (area.y + area.height + cell - 1) / cell * cell;
+		int screenX = (int) Math.floor(x * this.scale);
+		int screenY = (int) Math.floor(y * this.scale);
+		int screenXEnd = (int) Math.ceil(xEnd * this.scale) + 1;
+		int screenYEnd = (int) Math.ceil(yEnd * this.scale) + 1;
+		Rectangle screenArea = new Rectangle(screenX, screenY, screenXEnd - screenX, screenYEnd - screenY);
+		this.scaledDirty = this.scaledDirty == null ? screenArea : this.scaledDirty.union(screenArea);
+		this.repaint(screenArea);
 	}
 
+	private FrameListener frameListener = new FrameListener() {
+		@Override
+		public void frameReady(Rect area) {
+			if (ImagePanel.this.rendering == null) {
+				return;
+			}
+			BufferedImage image = ImagePanel.this.rendering.getImage(ImagePanel.this.toImageArea(ImagePanel.this.getVisibleRect()));
+			if (area == null || image != ImagePanel.this.image) {
+				ImagePanel.this.setImage(image);
+			} else {
+				ImagePanel.this.repaintImageArea(area);
+			}
+		}
+	};
+
 	public double getFitScale() {
 		return ((Math.min((double) this.getParent().getWidth() / (double) this.matModel.getWidth(), (double) this.getParent().getHeight()
 				/ (double) this.matModel.getHeight())));
@@ -167,7 +357,7 @@ public class ImagePanel extends JPanel {
 	private MatChangeListener matChangeListener = new MatChangeListener() {
 		@Override
 		public void matModified(MatChangeEvent e) {
-			ImagePanel.this.updateImageFromMat();
+			ImagePanel.this.updateImageFromMat(e.getChangedArea());
 		}
 
 		@Override
@@ -255,7 +445,11 @@ public class ImagePanel extends JPanel {
 		this.setScale(this.getFitScale());
 	}
 
+	/**
+	 * @return the image shown, which is shared with other panels and
+	 *         overwritten by following changes of the mat. copy it to keep it.
+	 */
 	public BufferedImage getImage() {
-		return this.image;
+		return this.rendering == null ? this.image : this.rendering.getImage();
 	}
 }
@@ -0,0 +1,227 @@
+/**
+ *    Copyright (C) 2015  Peter Plaimer <dct-tool@tk.jku.at>
+ *
+ *    This file is part of the program
+ *    InterActive Image Processing / Discrete Cosine Transformation (DCT) 
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cx.uni.jk.mms.iaip.image;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.IndexColorModel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.opencv.core.Rect;
+
+import cx.uni.jk.mms.iaip.filter.Palettes;
+
+/**
+ * Images of half, quarter, ... the size of an 8 bit image as made by
+ * {@link cx.uni.jk.mms.iaip.filter.MatHelper}, each pixel the mean of 2 x 2
+ * pixels of the level above. Indices into a palette can not be averaged,
+ * there the signed magnitude index of {@link Palettes} with the largest
+ * magnitude of the 2 x 2 is taken, so single strong values stay visible.
+ * Zoomed out, the level nearest to the scale is drawn instead of resampling
+ * the whole image on every repaint.
+ * 
+ * Levels are built on the first request only. Changes of the image mark the
+ * tiles of the levels they touch, and only these are rebuilt on the next
+ * request.
+ */
+public class ImagePyramid {
+
+	/** edge length of the tiles rebuilt after a change */
+	private static final int TILE = 64;
+
+	private BufferedImage image;
+
+	/** levels 1, 2, ... as built so far */
+	private final List<Level> levels = new ArrayList<>();
+
+	/**
+	 * @param image
+	 *            level 0, may be null
+	 */
+	public ImagePyramid(BufferedImage image) {
+		super();
+		this.image = image;
+	}
+
+	/**
+	 * @param scale
+	 *            of the image on screen
+	 * @return the smallest level with at least one pixel per screen pixel
+	 */
+	public static int getLevelForScale(double scale) {
+		int level = 0;
+		while (scale <= 0.5d && level < 30) {
+			scale *= 2.0d;
+			level++;
+		}
+		return level;
+	}
+
+	/**
+	 * drops all levels, e.g. after all of the image has changed.
+	 * 
+	 * @param image
+	 *            the new level 0, may be the same as before
+	 */
+	public synchronized void reset(BufferedImage image) {
+		this.image = image;
+		this.levels.clear();
+	}
+
+	/**
+	 * marks the tiles of all levels touched by area of level 0.
+	 * 
+	 * @param area
+	 */
+	public synchronized void invalidate(Rect area) {
+		if (area.width <= 0 || area.height <= 0) {
+			return;
+		}
+		for (int i = 0; i < this.levels.size(); i++) {
+			int shift = i + 1;
+			this.levels.get(i).invalidate(area.x >> shift, area.y >> shift, (area.x + area.width - 1) >> shift,
+					(area.y + area.height - 1) >> shift);
+		}
+	}
+
+	/**
+	 * @param level
+	 *            0 for the image itself
+	 * @return the image of level, or of the smallest level possible if the
+	 *         image is too small for it, or null if there is no image
+	 */
+	public synchronized BufferedImage getLevel(int level) {
+		if (this.image == null || level <= 0) {
+			return this.image;
+		}
+		BufferedImage above = this.image;
+		for (int i = 0; i < level; i++) {
+			if (i == this.levels.size()) {
+				if (above.getWidth() == 1 && above.getHeight() == 1) {
+					return above;
+				}
+				this.levels.add(new Level(above));
+			}
+			Level current = this.levels.get(i);
+			current.rebuild(above);
+			above = current.image;
+		}
+		return above;
+	}
+
+	/**
+	 * One level below level 0, with a flag for each tile to be rebuilt.
+	 */
+	private static class Level {
+		private final BufferedImage image;
+		private final int tileCols;
+		private final int tileRows;
+		private final boolean[] dirty;
+		private boolean anyDirty = true;
+
+		Level(BufferedImage above) {
+			int width = (above.getWidth() + 1) / 2;
+			int height = (above.getHeight() + 1) / 2;
+			this.image = new BufferedImage(above.getColorModel(), above.getRaster().createCompatibleWritableRaster(width, height),
+					above.isAlphaPremultiplied(), null);
+			this.tileCols = (width + TILE - 1) / TILE;
+			this.tileRows = (height + TILE - 1) / TILE;
+			this.dirty = new boolean[this.tileCols * this.tileRows];
+			Arrays.fill(this.dirty, true);
+		}
+
+		/**
+		 * marks the tiles touched by the pixels x0..x1, y0..y1 of this level
+		 */
+		void invalidate(int x0, int y0, int x1, int y1) {
+			int col1 = Math.min(x1 / TILE, this.tileCols - 1);
+			int row1 = Math.min(y1 / TILE, this.tileRows - 1);
+			for (int row = Math.max(y0 / TILE, 0); row <= row1; row++) {
+				for (int col = Math.max(x0 / TILE, 0); col <= col1; col++) {
+					this.dirty[row * this.tileCols + col] = true;
+					this.anyDirty = true;
+				}
+			}
+		}
+
+		/**
+		 * rebuilds the tiles marked from the level above, which is up to date.
+		 */
+		void rebuild(BufferedImage above) {
+			if (!this.anyDirty) {
+				return;
+			}
+			for (int row = 0; row < this.tileRows; row++) {
+				for (int col = 0; col < this.tileCols; col++) {
+					if (this.dirty[row * this.tileCols + col]) {
+						this.reduce(above, col * TILE, row * TILE);
+						this.dirty[row * this.tileCols + col] = false;
+					}
+				}
+			}
+			this.anyDirty = false;
+		}
+
+		/**
+		 * sets each pixel of the tile at x0, y0 to the mean of its 2 x 2
+		 * pixels above, repeating the last row and column of an odd size.
+		 */
+		private void reduce(BufferedImage above, int x0, int y0) {
+			byte[] src = ((DataBufferByte) above.getRaster().getDataBuffer()).getData();
+			byte[] dst = ((DataBufferByte) this.image.getRaster().getDataBuffer()).getData();
+			int bands = this.image.getRaster().getNumBands();
+			boolean indexed = this.image.getColorModel() instanceof IndexColorModel;
+			int srcWidth = above.getWidth();
+			int srcHeight = above.getHeight();
+			int width = this.image.getWidth();
+			int x1 = Math.min(x0 + TILE, width);
+			int y1 = Math.min(y0 + TILE, this.image.getHeight());
+			for (int y = y0; y < y1; y++) {
+				int srcRow0 = 2 * y * srcWidth * bands;
+				int srcRow1 = Math.min(2 * y + 1, srcHeight - 1) * srcWidth * bands;
+				int d = (y * width + x0) * bands;
+				for (int x = x0; x < x1; x++) {
+					int s0 = 2 * x * bands;
+					int s1 = Math.min(2 * x + 1, srcWidth - 1) * bands;
+					if (indexed) {
+						dst[d++] = strongest(strongest(src[srcRow0 + s0], src[srcRow0 + s1]),
+								strongest(src[srcRow1 + s0], src[srcRow1 + s1]));
+						continue;
+					}
+					for (int band = 0; band < bands; band++, d++) {
+						int sum = (src[srcRow0 + s0 + band] & 0xff) + (src[srcRow0 + s1 + band] & 0xff) + (src[srcRow1 + s0 + band] & 0xff)
+								+ (src[srcRow1 + s1 + band] & 0xff);
+						dst[d] = (byte) ((sum + 2) >> 2);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the signed magnitude index of larger magnitude, a if equal
+	 */
+	private static byte strongest(byte a, byte b) {
+		return (b & Palettes.MAX_MAGNITUDE) > (a & Palettes.MAX_MAGNITUDE) ? b : a;
+	}
+}
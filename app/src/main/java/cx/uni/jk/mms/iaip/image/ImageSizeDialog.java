@@ -35,8 +35,20 @@ import org.opencv.core.Mat;
 public class ImageSizeDialog {
 
 	public static Dimension show(JFrame frame, Dimension size) {
-		JSpinner widthSpinner = new JSpinner(new SpinnerNumberModel((int) size.getWidth(), 0, 4096, 2));
-		JSpinner heightSpinner = new JSpinner(new SpinnerNumberModel((int) size.getHeight(), 0, 4096, 2));
+		return show(frame, size, 2);
+	}
+
+	/**
+	 * @param frame
+	 * @param size
+	 *            initial size
+	 * @param step
+	 *            2 if only even sizes are allowed, 1 otherwise
+	 * @return the size chosen, null if cancelled
+	 */
+	public static Dimension show(JFrame frame, Dimension size, int step) {
+		JSpinner widthSpinner = new JSpinner(new SpinnerNumberModel((int) size.getWidth(), 0, 4096, step));
+		JSpinner heightSpinner = new JSpinner(new SpinnerNumberModel((int) size.getHeight(), 0, 4096, step));
 
 		Object[] message = { "Width:", widthSpinner, "Height:", heightSpinner };
 
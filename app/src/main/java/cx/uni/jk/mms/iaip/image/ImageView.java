@@ -25,17 +25,19 @@ import java.awt.Font;
 import java.awt.HeadlessException;
 import java.awt.event.ActionEvent;
 import java.awt.event.KeyEvent;
-import java.io.IOException;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseListener;
 import java.util.logging.Logger;
 
 import javax.swing.AbstractAction;
 import javax.swing.Action;
 import javax.swing.ButtonGroup;
 import javax.swing.JButton;
-import javax.swing.JFileChooser;
 import javax.swing.JLabel;
 import javax.swing.JMenu;
 import javax.swing.JMenuItem;
+import javax.swing.JPanel;
 import javax.swing.JRadioButtonMenuItem;
 import javax.swing.JScrollPane;
 import javax.swing.KeyStroke;
@@ -45,6 +47,9 @@ import org.opencv.core.Mat;
 import cx.uni.jk.mms.iaip.filter.MatFilter;
 import cx.uni.jk.mms.iaip.filter.MatFilterManager;
 import cx.uni.jk.mms.iaip.main.AbstractMatView;
+import cx.uni.jk.mms.iaip.mat.CrossMatListener;
+import cx.uni.jk.mms.iaip.mat.MatChangeEvent;
+import cx.uni.jk.mms.iaip.mat.MatChangeListener;
 import cx.uni.jk.mms.iaip.mat.MatModel;
 
 /**
@@ -57,6 +62,10 @@ public class ImageView extends AbstractMatView {
 	private final ImageController controller;
 	ImagePanel imagePanel;
 	private JLabel statusbar;
+	/** null unless this view shows DCT coefficients */
+	private BasisPreview basisPreview = null;
+	/** the block size the basis image shown belongs to */
+	private int basisBlockSize = CrossMatListener.WHOLE_MAT;
 
 	public ImageView(ImageController controller, MatModel matModel) throws HeadlessException {
 		super(controller, matModel);
@@ -80,10 +89,23 @@ public class ImageView extends AbstractMatView {
 		/** status bar */
 		this.statusbar = new JLabel("Hover image to get pixel info.");
 		this.statusbar.setFont(new Font(Font.MONOSPACED, NORMAL, this.statusbar.getFont().getSize()));
-		this.getContentPane().add(this.statusbar, BorderLayout.SOUTH);
+		if (this.controller.isFrequencyMatModel()) {
+			/** basis image of the coefficient under the mouse next to its value */
+			this.basisPreview = new BasisPreview();
+			JPanel statusPanel = new JPanel(new BorderLayout());
+			statusPanel.add(this.statusbar, BorderLayout.CENTER);
+			statusPanel.add(this.basisPreview, BorderLayout.EAST);
+			this.getContentPane().add(statusPanel, BorderLayout.SOUTH);
+		} else {
+			this.getContentPane().add(this.statusbar, BorderLayout.SOUTH);
+		}
 
 		/** event listeners */
 		this.imagePanel.addPixelChangeListener(this.pixelChangeListener);
+		if (this.basisPreview != null) {
+			this.imagePanel.addMouseListener(this.basisMouseListener);
+			this.model.addMatChangeListener(this.basisMatChangeListener);
+		}
 
 		/** enhance menu */
 		this.enhanceMenu();
@@ -96,18 +118,74 @@ public class ImageView extends AbstractMatView {
 		this.imagePanel.zoomFit();
 	}
 
+	@Override
+	public void dispose() {
+		if (this.basisPreview != null) {
+			this.model.removeMatChangeListener(this.basisMatChangeListener);
+		}
+		this.imagePanel.dispose();
+		super.dispose();
+	}
+
 	private PixelChangeListener pixelChangeListener = new PixelChangeListener() {
 		@Override
 		public void pixelUnderMouseChanged(PixelChangeEvent e) {
 			ImageView.this.statusbar.setText(String.format("%4d / %4d = %4.1f", (int) e.getPoint().getX(), (int) e.getPoint().getY(),
 					e.getValue()));
+			if (ImageView.this.basisPreview != null) {
+				ImageView.this.showBasis((int) e.getPoint().getX(), (int) e.getPoint().getY());
+			}
+		}
+	};
+
+	/** the basis image shown is stale when the mouse left */
+	private MouseListener basisMouseListener = new MouseAdapter() {
+		@Override
+		public void mouseExited(MouseEvent e) {
+			ImageView.this.basisPreview.clear();
 		}
 	};
 
+	/** so it is when the block size changed or another mat was loaded */
+	private MatChangeListener basisMatChangeListener = new MatChangeListener() {
+		@Override
+		public void matModified(MatChangeEvent e) {
+			if (ImageView.this.controller.getBlockSize() != ImageView.this.basisBlockSize) {
+				ImageView.this.basisPreview.clear();
+			}
+		}
+
+		@Override
+		public void matLoaded(MatChangeEvent e) {
+			ImageView.this.basisPreview.clear();
+		}
+	};
+
+	/**
+	 * shows the basis image of the coefficient at (x, y), of the whole mat or
+	 * of its block
+	 */
+	private void showBasis(int x, int y) {
+		int cols = this.model.getWidth();
+		int rows = this.model.getHeight();
+		int blockSize = this.controller.getBlockSize();
+		this.basisBlockSize = blockSize;
+		if (blockSize != CrossMatListener.WHOLE_MAT) {
+			int blockX = x / blockSize * blockSize;
+			int blockY = y / blockSize * blockSize;
+			/** blocks at the right and bottom edge may be smaller */
+			cols = Math.min(blockSize, cols - blockX);
+			rows = Math.min(blockSize, rows - blockY);
+			x -= blockX;
+			y -= blockY;
+		}
+		this.basisPreview.showCoefficient(x, y, cols, rows);
+	}
+
 	protected void enhanceMenu() {
 
 		/** enhance file menu */
-		int insertAt = 6;
+		int insertAt = 7;
 		this.menuBar.fileMenu.insertSeparator(insertAt++);
 
 		final JMenuItem saveVisibleImageItem = new JMenuItem(this.saveVisibleImageAction);
@@ -235,12 +313,9 @@ public class ImageView extends AbstractMatView {
 
 		@Override
 		public void actionPerformed(ActionEvent e) {
-			if (fc.showSaveDialog(ImageView.this) == JFileChooser.APPROVE_OPTION) {
-				try {
-					ImageView.this.controller.saveImage(ImageView.this.imagePanel.getImage(), fc.getSelectedFile());
-				} catch (IOException e1) {
-					ImageView.this.showExceptionDialog(e1);
-				}
+			if (ImageView.this.showPngSaveDialog()) {
+				ImageView.this.runExport(ImageView.this.controller.saveImage(ImageView.this.imagePanel.getImage(), fc.getSelectedFile(),
+						ImageView.this.getPngCompressionLevel()));
 			}
 		}
 	};
@@ -0,0 +1,591 @@
+/**
+ *    Copyright (C) 2015  Peter Plaimer <dct-tool@tk.jku.at>
+ *
+ *    This file is part of the program
+ *    InterActive Image Processing / Discrete Cosine Transformation (DCT) 
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cx.uni.jk.mms.iaip.image;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+
+import cx.uni.jk.mms.iaip.filter.MatFilter;
+import cx.uni.jk.mms.iaip.filter.MatHelper;
+import cx.uni.jk.mms.iaip.filter.ValueRange;
+import cx.uni.jk.mms.iaip.mat.MatModel;
+import cx.uni.jk.mms.iaip.mat.SerialWorker;
+
+/**
+ * Images of {@link MatModel}s converted by {@link MatFilter}s, shared by all
+ * {@link ImagePanel}s showing the same model with the same filter. The first
+ * panel to ask for a part of a version of the model has it rendered, the
+ * others use the result. An image is dropped when the last panel using it
+ * releases it.
+ */
+public class RenderCache {
+
+	/** edge length of the tiles converted on request */
+	static final int TILE = 256;
+
+	private static List<Entry> entries = new LinkedList<>();
+
+	/** frames per second rendered at most by each entry, set in the Window menu */
+	private static int frameRate = 60;
+
+	/**
+	 * @param matModel
+	 * @param matFilter
+	 * @param listener
+	 *            to be told about each frame rendered
+	 * @return the shared image of matModel converted by matFilter, to be
+	 *         released by {@link #release(Entry, FrameListener)} when not used
+	 *         any more
+	 */
+	public static synchronized Entry acquire(MatModel matModel, MatFilter matFilter, FrameListener listener) {
+		for (Entry entry : entries) {
+			if (entry.matModel == matModel && entry.matFilter == matFilter) {
+				entry.frameListeners.add(listener);
+				return entry;
+			}
+		}
+		Entry entry = new Entry(matModel, matFilter);
+		entry.frameListeners.add(listener);
+		entries.add(entry);
+		return entry;
+	}
+
+	/**
+	 * @param entry
+	 *            as acquired before
+	 * @param listener
+	 *            as given to {@link #acquire(MatModel, MatFilter, FrameListener)}
+	 */
+	public static synchronized void release(Entry entry, FrameListener listener) {
+		entry.frameListeners.remove(listener);
+		if (entry.frameListeners.isEmpty()) {
+			entries.remove(entry);
+			entry.frameTimer.stop();
+			entry.worker.shutdown();
+		}
+	}
+
+	public static int getFrameRate() {
+		return frameRate;
+	}
+
+	/**
+	 * @param frameRate
+	 *            frames per second rendered at most by each image, further
+	 *            changes are collected into the next frame
+	 */
+	public static void setFrameRate(int frameRate) {
+		RenderCache.frameRate = Math.max(1, frameRate);
+	}
+
+	/**
+	 * The image of one model and filter, and the version of the model it
+	 * shows. The image is divided into tiles of {@link RenderCache#TILE}
+	 * pixels, which are converted only when a part of them is requested, e.g.
+	 * because it is visible. Each tile remembers the area changed since it
+	 * was converted last.
+	 * 
+	 * Requested tiles are rendered as frames by a {@link SerialWorker} from
+	 * copies of their values, at most {@link RenderCache#getFrameRate()}
+	 * times per second. Changes and requests arriving meanwhile are collected
+	 * into the next frame, so intermediate versions are skipped. Finished
+	 * frames are copied into the image on the event dispatch thread, unless
+	 * their tiles changed again meanwhile. Apart from the worker, all methods
+	 * are called on the event dispatch thread.
+	 */
+	public static class Entry {
+		private final MatModel matModel;
+		private final MatFilter matFilter;
+		private final List<FrameListener> frameListeners = new CopyOnWriteArrayList<>();
+		private final SerialWorker worker = new SerialWorker("render");
+
+		private BufferedImage image = null;
+		/** a second image for rendering whole frames, null until needed */
+		private BufferedImage spareImage = null;
+		private int channels = 0;
+		/** range of the mat the image is converted with */
+		private ValueRange valueRange = null;
+		/** version of the model the image is converted from, -1 for none */
+		private long version = -1;
+		/** area changed by version, null for all */
+		private Rect changedArea = null;
+
+		private int tileCols = 0;
+		private int tileRows = 0;
+		/** area of each tile to be converted yet, null if up to date */
+		private Rect[] dirty = new Rect[0];
+		/** counts the changes of each tile, to detect outdated frames */
+		private int[] generations = new int[0];
+		/** true if all tiles are to be converted completely */
+		private boolean allDirty = false;
+
+		/** smaller images for zooming out, built on request */
+		private final ImagePyramid pyramid = new ImagePyramid(null);
+
+		/** area requested since the last frame was started, null for none */
+		private Rect wantedArea = null;
+		/** true from the request of a frame until it has been copied */
+		private boolean framePending = false;
+		/** System.nanoTime() of the start of the last frame */
+		private long lastFrameStart = 0;
+		/** delays the next frame to keep the frame rate */
+		private final Timer frameTimer = new Timer(0, new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				Entry.this.startFrame();
+			}
+		});
+
+		private Entry(MatModel matModel, MatFilter matFilter) {
+			super();
+			this.matModel = matModel;
+			this.matFilter = matFilter;
+			this.frameTimer.setRepeats(false);
+		}
+
+		public MatFilter getMatFilter() {
+			return this.matFilter;
+		}
+
+		/**
+		 * converts all tiles not converted yet right away, e.g. for saving.
+		 * 
+		 * @return the complete image, which is overwritten by following
+		 *         changes of the mat. null until the first update.
+		 */
+		public BufferedImage getImage() {
+			if (this.image != null) {
+				this.convert(new Rect(0, 0, this.image.getWidth(), this.image.getHeight()));
+			}
+			return this.image;
+		}
+
+		/**
+		 * requests a frame for the tiles touching area which are out of date.
+		 * 
+		 * @param area
+		 *            may reach outside the image
+		 * @return the image as rendered so far, it may be out of date in
+		 *         area until {@link FrameListener#frameReady(Rect)}. null until
+		 *         the first update.
+		 */
+		public BufferedImage getImage(Rect area) {
+			if (this.image != null) {
+				this.requestFrame(area);
+			}
+			return this.image;
+		}
+
+		/**
+		 * requests a frame for all tiles out of date.
+		 * 
+		 * @param level
+		 *            of the {@link ImagePyramid}, 0 for the image itself
+		 * @return the image as rendered so far reduced to about half the size
+		 *         level times
+		 */
+		public BufferedImage getImage(int level) {
+			if (this.image != null) {
+				this.requestFrame(new Rect(0, 0, this.image.getWidth(), this.image.getHeight()));
+			}
+			return this.pyramid.getLevel(level);
+		}
+
+		/**
+		 * @return the area of the image changed by the last update of the
+		 *         version, null if all of it changed
+		 */
+		public Rect getChangedArea() {
+			return this.changedArea;
+		}
+
+		/**
+		 * takes the current version of the mat into account, unless this has
+		 * been done already. Only the tiles touching the changed area are
+		 * marked for conversion, as long as the image shows the previous
+		 * version and the range of values of the filter stays the same.
+		 * Otherwise all tiles are.
+		 * 
+		 * @param changedArea
+		 *            of the current version of the model relative to the
+		 *            previous one, null for all
+		 */
+		public void update(Rect changedArea) {
+			long version = this.matModel.getVersion();
+			if (version == this.version && this.image != null) {
+				return;
+			}
+
+			Mat mat = this.matModel.getMat();
+			ValueRange range = this.matFilter.getValueRange(this.matModel.getStatistics());
+			if (changedArea == null || this.image == null || version != this.version + 1 || !range.equals(this.valueRange)
+					|| this.image.getWidth() != mat.cols() || this.image.getHeight() != mat.rows()) {
+				this.invalidateAll(mat, range, version);
+				return;
+			}
+
+			int x = Math.max(changedArea.x, 0);
+			int y = Math.max(changedArea.y, 0);
+			int width = Math.min(changedArea.x + changedArea.width, mat.cols()) - x;
+			int height = Math.min(changedArea.y + changedArea.height, mat.rows()) - y;
+			this.version = version;
+			this.changedArea = new Rect(x, y, Math.max(width, 0), Math.max(height, 0));
+			if (width <= 0 || height <= 0) {
+				return;
+			}
+			for (int row = y / TILE; row <= (y + height - 1) / TILE; row++) {
+				for (int col = x / TILE; col <= (x + width - 1) / TILE; col++) {
+					int tile = row * this.tileCols + col;
+					Rect tileArea = intersect(this.changedArea, new Rect(col * TILE, row * TILE, TILE, TILE));
+					this.dirty[tile] = this.dirty[tile] == null ? tileArea : union(this.dirty[tile], tileArea);
+					this.generations[tile]++;
+				}
+			}
+		}
+
+		/**
+		 * marks all tiles, and makes a new image if the size or the number of
+		 * channels changed.
+		 */
+		private void invalidateAll(Mat mat, ValueRange range, long version) {
+			this.valueRange = range;
+			this.version = version;
+			this.changedArea = null;
+			if (mat.empty()) {
+				this.image = null;
+				this.pyramid.reset(null);
+				return;
+			}
+			this.channels = this.matFilter.convert(mat.submat(new Rect(0, 0, 1, 1)), range).channels();
+			if (!this.fits(this.image, mat)) {
+				this.image = MatHelper.createImage(mat.cols(), mat.rows(), this.channels, this.matFilter.getPalette());
+				this.tileCols = (mat.cols() + TILE - 1) / TILE;
+				this.tileRows = (mat.rows() + TILE - 1) / TILE;
+				this.dirty = new Rect[this.tileCols * this.tileRows];
+				this.generations = new int[this.tileCols * this.tileRows];
+			}
+			for (int row = 0; row < this.tileRows; row++) {
+				for (int col = 0; col < this.tileCols; col++) {
+					int tile = row * this.tileCols + col;
+					this.dirty[tile] = intersect(new Rect(0, 0, mat.cols(), mat.rows()), new Rect(col * TILE, row * TILE, TILE, TILE));
+					this.generations[tile]++;
+				}
+			}
+			this.allDirty = true;
+			this.pyramid.reset(this.image);
+		}
+
+		/**
+		 * @return true if image has the size of mat and the channels of the
+		 *         filter
+		 */
+		private boolean fits(BufferedImage image, Mat mat) {
+			return image != null && image.getWidth() == mat.cols() && image.getHeight() == mat.rows()
+					&& image.getRaster().getNumBands() == this.channels;
+		}
+
+		/**
+		 * converts the marked areas of the tiles touching area right away.
+		 */
+		private void convert(Rect area) {
+			Mat mat = this.matModel.getMat();
+			int x = Math.max(area.x, 0);
+			int y = Math.max(area.y, 0);
+			int xEnd = Math.min(area.x + area.width, this.image.getWidth());
+			int yEnd = Math.min(area.y + area.height, this.image.getHeight());
+			if (xEnd <= x || yEnd <= y) {
+				return;
+			}
+
+			if (this.allDirty && x == 0 && y == 0 && xEnd == this.image.getWidth() && yEnd == this.image.getHeight()) {
+				/** all at once, as the filters are faster on large mats */
+				MatHelper.convertMatTo8BitBufferedImage(this.matFilter.convert(mat, this.valueRange), this.image, this.matFilter.getPalette());
+				Arrays.fill(this.dirty, null);
+				this.allDirty = false;
+				this.pyramid.reset(this.image);
+				return;
+			}
+
+			for (int row = y / TILE; row <= (yEnd - 1) / TILE; row++) {
+				for (int col = x / TILE; col <= (xEnd - 1) / TILE; col++) {
+					int tile = row * this.tileCols + col;
+					Rect tileArea = this.dirty[tile];
+					if (tileArea != null) {
+						Mat part = this.matFilter.convert(mat.submat(tileArea), this.valueRange);
+						MatHelper.convertMatInto8BitBufferedImage(part, this.image, tileArea.x, tileArea.y);
+						this.pyramid.invalidate(tileArea);
+						this.dirty[tile] = null;
+						this.allDirty = false;
+					}
+				}
+			}
+		}
+
+		/**
+		 * adds area to the area wanted and starts a frame for it, or schedules
+		 * one if the last frame started too recently. Does nothing if the
+		 * tiles touching area are up to date.
+		 */
+		private void requestFrame(Rect area) {
+			if (this.findDirtyTiles(area).isEmpty()) {
+				return;
+			}
+			this.wantedArea = this.wantedArea == null ? area : union(this.wantedArea, area);
+			if (this.framePending) {
+				/** collected into the frame after the pending one */
+				return;
+			}
+			this.framePending = true;
+			long delay = this.lastFrameStart + 1000000000L / frameRate - System.nanoTime();
+			if (delay <= 0) {
+				this.startFrame();
+			} else {
+				this.frameTimer.setInitialDelay((int) Math.max(1, delay / 1000000L));
+				this.frameTimer.restart();
+			}
+		}
+
+		/**
+		 * @return indices of the tiles out of date touching area
+		 */
+		private List<Integer> findDirtyTiles(Rect area) {
+			List<Integer> tiles = new ArrayList<>();
+			if (this.image == null) {
+				return tiles;
+			}
+			int x = Math.max(area.x, 0);
+			int y = Math.max(area.y, 0);
+			int xEnd = Math.min(area.x + area.width, this.image.getWidth());
+			int yEnd = Math.min(area.y + area.height, this.image.getHeight());
+			if (xEnd <= x || yEnd <= y) {
+				return tiles;
+			}
+			for (int row = y / TILE; row <= (yEnd - 1) / TILE; row++) {
+				for (int col = x / TILE; col <= (xEnd - 1) / TILE; col++) {
+					if (this.dirty[row * this.tileCols + col] != null) {
+						tiles.add(row * this.tileCols + col);
+					}
+				}
+			}
+			return tiles;
+		}
+
+		/**
+		 * copies the values of the tiles wanted and out of date, and renders
+		 * them on the worker.
+		 */
+		private void startFrame() {
+			Rect area = this.wantedArea;
+			this.wantedArea = null;
+			List<Integer> tiles = area == null ? new ArrayList<Integer>() : this.findDirtyTiles(area);
+			if (tiles.isEmpty() || this.frameListeners.isEmpty()) {
+				/** nothing to do, or released */
+				this.framePending = false;
+				return;
+			}
+			this.lastFrameStart = System.nanoTime();
+
+			final Mat mat = this.matModel.getMat();
+			final ValueRange range = this.valueRange;
+			final BufferedImage target = this.image;
+			if (this.allDirty && tiles.size() == this.dirty.length) {
+				/** everything, rendered into the spare image as a whole */
+				final Mat values = mat.clone();
+				final int[] generations = this.generations.clone();
+				final BufferedImage spare = this.fits(this.spareImage, mat) ? this.spareImage : null;
+				this.spareImage = null;
+				this.worker.execute(new Runnable() {
+					@Override
+					public void run() {
+						BufferedImage converted = null;
+						try {
+							converted = MatHelper.convertMatTo8BitBufferedImage(Entry.this.matFilter.convert(values, range), spare,
+									Entry.this.matFilter.getPalette());
+						} finally {
+							/** finish even if rendering failed, or no frame would ever be started again */
+							final BufferedImage frame = converted;
+							SwingUtilities.invokeLater(new Runnable() {
+								@Override
+								public void run() {
+									Entry.this.finishWholeFrame(target, frame, spare, generations);
+								}
+							});
+						}
+					}
+				});
+				return;
+			}
+
+			final List<Part> parts = new ArrayList<>();
+			for (int tile : tiles) {
+				Rect tileArea = this.dirty[tile];
+				parts.add(new Part(tile, this.generations[tile], tileArea, mat.submat(tileArea).clone()));
+			}
+			this.worker.execute(new Runnable() {
+				@Override
+				public void run() {
+					boolean rendered = false;
+					try {
+						for (Part part : parts) {
+							Mat converted = Entry.this.matFilter.convert(part.values, range);
+							if (converted.depth() != CvType.CV_8U) {
+								converted.convertTo(converted, CvType.CV_8U);
+							}
+							part.values = converted;
+						}
+						rendered = true;
+					} finally {
+						/** finish even if rendering failed, the tiles stay out of date then */
+						final List<Part> done = rendered ? parts : Collections.<Part> emptyList();
+						SwingUtilities.invokeLater(new Runnable() {
+							@Override
+							public void run() {
+								Entry.this.finishFrame(target, done);
+							}
+						});
+					}
+				}
+			});
+		}
+
+		/**
+		 * copies the parts rendered into the image, unless their tiles changed
+		 * meanwhile, and starts the next frame if there is anything wanted.
+		 */
+		private void finishFrame(BufferedImage target, List<Part> parts) {
+			Rect changed = null;
+			if (target == this.image) {
+				for (Part part : parts) {
+					if (this.generations[part.tile] == part.generation) {
+						MatHelper.convertMatInto8BitBufferedImage(part.values, this.image, part.area.x, part.area.y);
+						this.pyramid.invalidate(part.area);
+						this.dirty[part.tile] = null;
+						this.allDirty = false;
+						changed = changed == null ? part.area : union(changed, part.area);
+					}
+				}
+			}
+			this.framePending = false;
+			if (changed != null) {
+				for (FrameListener l : this.frameListeners) {
+					l.frameReady(changed);
+				}
+			}
+			this.requestNextFrame();
+		}
+
+		/**
+		 * replaces the image by frame, unless the size changed meanwhile, and
+		 * starts the next frame if there is anything wanted.
+		 * 
+		 * @param frame
+		 *            null if rendering failed
+		 * @param spare
+		 *            the spare image given to the worker, kept if frame is not
+		 *            used
+		 */
+		private void finishWholeFrame(BufferedImage target, BufferedImage frame, BufferedImage spare, int[] generations) {
+			boolean replaced = false;
+			if (frame == null) {
+				if (this.spareImage == null) {
+					this.spareImage = spare;
+				}
+			} else if (target == this.image && frame.getWidth() == this.image.getWidth() && frame.getHeight() == this.image.getHeight()
+					&& frame.getRaster().getNumBands() == this.channels) {
+				this.spareImage = this.image;
+				this.image = frame;
+				for (int tile = 0; tile < this.dirty.length; tile++) {
+					if (this.generations[tile] == generations[tile]) {
+						this.dirty[tile] = null;
+					} else {
+						/** the spare image holds an older state than frame, the whole tile is out of date */
+						this.dirty[tile] = intersect(new Rect(0, 0, frame.getWidth(), frame.getHeight()), new Rect(tile % this.tileCols
+								* TILE, tile / this.tileCols * TILE, TILE, TILE));
+					}
+				}
+				this.allDirty = false;
+				this.pyramid.reset(this.image);
+				replaced = true;
+			}
+			this.framePending = false;
+			if (replaced) {
+				for (FrameListener l : this.frameListeners) {
+					l.frameReady(null);
+				}
+			}
+			this.requestNextFrame();
+		}
+
+		private void requestNextFrame() {
+			if (this.wantedArea != null) {
+				Rect area = this.wantedArea;
+				this.wantedArea = null;
+				this.requestFrame(area);
+			}
+		}
+	}
+
+	/**
+	 * The values of the area of a tile to be rendered, replaced by the bytes
+	 * rendered.
+	 */
+	private static class Part {
+		final int tile;
+		final int generation;
+		final Rect area;
+		Mat values;
+
+		Part(int tile, int generation, Rect area, Mat values) {
+			this.tile = tile;
+			this.generation = generation;
+			this.area = area;
+			this.values = values;
+		}
+	}
+
+	private static Rect intersect(Rect a, Rect b) {
+		int x = Math.max(a.x, b.x);
+		int y = Math.max(a.y, b.y);
+		int xEnd = Math.min(a.x + a.width, b.x + b.width);
+		int yEnd = Math.min(a.y + a.height, b.y + b.height);
+		return new Rect(x, y, Math.max(xEnd - x, 0), Math.max(yEnd - y, 0));
+	}
+
+	private static Rect union(Rect a, Rect b) {
+		int x = Math.min(a.x, b.x);
+		int y = Math.min(a.y, b.y);
+		return new Rect(x, y, Math.max(a.x + a.width, b.x + b.width) - x, Math.max(a.y + a.height, b.y + b.height) - y);
+	}
+}
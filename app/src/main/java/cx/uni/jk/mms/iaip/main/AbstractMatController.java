@@ -28,6 +28,9 @@ import java.util.List;
 
 import org.opencv.core.Mat;
 
+import cx.uni.jk.mms.iaip.dct.DctEngine;
+import cx.uni.jk.mms.iaip.export.PngEncoder;
+import cx.uni.jk.mms.iaip.export.PngExportTask;
 import cx.uni.jk.mms.iaip.mat.IllegalSizeException;
 import cx.uni.jk.mms.iaip.mat.MatModel;
 import cx.uni.jk.mms.iaip.mat.UnsupportedImageTypeException;
@@ -68,6 +71,29 @@ public abstract class AbstractMatController {
 		return this.views;
 	}
 
+	public DctEngine getEngine() {
+		return this.mainController.getEngine();
+	}
+
+	public void setEngine(DctEngine engine) throws IllegalSizeException {
+		this.mainController.setEngine(engine);
+	}
+
+	public int getBlockSize() {
+		return this.mainController.getBlockSize();
+	}
+
+	public void setBlockSize(int blockSize) {
+		this.mainController.setBlockSize(blockSize);
+	}
+
+	/**
+	 * @return true if the model holds the DCT coefficients
+	 */
+	public boolean isFrequencyMatModel() {
+		return this.mainController.isFrequencyMatModel(this.model);
+	}
+
 	public AbstractMatView addNewSpatialImageView() {
 		return this.mainController.addNewSpatialImageView();
 	}
@@ -105,12 +131,17 @@ public abstract class AbstractMatController {
 	}
 
 	/**
-	 * saves the model's mat to an image file
+	 * saves the model's mat to a .png file, no matter if it fits the
+	 * extension.
 	 * 
 	 * @param file
+	 * @param level
+	 *            of compression, see {@link PngEncoder#PngEncoder(int)}
+	 * @return the task encoding a copy of the mat off the event dispatch
+	 *         thread, to be started
 	 */
-	public void saveMat(File file) {
-		this.model.saveMat(file);
+	public PngExportTask saveMat(File file, int level) {
+		return new PngExportTask(this.model.getByteMat(), file, level);
 	}
 
 	/**
@@ -23,30 +23,47 @@ package cx.uni.jk.mms.iaip.main;
 import java.awt.Dimension;
 import java.awt.Point;
 import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.awt.event.KeyEvent;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.awt.event.WindowListener;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
 import java.util.logging.Logger;
 
 import javax.swing.AbstractAction;
 import javax.swing.Action;
+import javax.swing.ButtonGroup;
 import javax.swing.JFileChooser;
 import javax.swing.JFrame;
 import javax.swing.JMenu;
 import javax.swing.JMenuBar;
 import javax.swing.JMenuItem;
 import javax.swing.JOptionPane;
+import javax.swing.JRadioButtonMenuItem;
 import javax.swing.KeyStroke;
+import javax.swing.ProgressMonitor;
+import javax.swing.Timer;
 import javax.swing.WindowConstants;
+import javax.swing.event.MenuEvent;
+import javax.swing.event.MenuListener;
 
 import org.opencv.core.CvException;
 import org.opencv.core.Mat;
 
+import cx.uni.jk.mms.iaip.dct.DctEngine;
+import cx.uni.jk.mms.iaip.dct.DctEngineManager;
 import cx.uni.jk.mms.iaip.examples.ExampleManager;
+import cx.uni.jk.mms.iaip.export.PngCompressionAccessory;
+import cx.uni.jk.mms.iaip.export.PngExportTask;
 import cx.uni.jk.mms.iaip.image.ImageSizeDialog;
+import cx.uni.jk.mms.iaip.image.RenderCache;
+import cx.uni.jk.mms.iaip.mat.CrossMatListener;
 import cx.uni.jk.mms.iaip.mat.IllegalSizeException;
 import cx.uni.jk.mms.iaip.mat.MatModel;
 
@@ -59,8 +76,17 @@ public abstract class AbstractMatView extends JFrame {
 
 	private static final int NEW_VIEW_LOCATION_OFFSET = 50;
 
+	/** how often a running export looks whether its dialog was cancelled */
+	private static final int CANCEL_POLL_MILLIS = 100;
+
 	protected static final JFileChooser fc = new JFileChooser();
 
+	/** shown by {@link #fc} when saving a PNG file */
+	private static final PngCompressionAccessory pngCompressionAccessory = new PngCompressionAccessory();
+
+	/** frames per second offered as the rate at which images are redrawn */
+	private static final int[] FRAME_RATES = { 15, 30, 60, 120 };
+
 	protected final AbstractMatController controller;
 	protected final MatModel model;
 	protected MatViewMenuBar menuBar;
@@ -92,6 +118,7 @@ public abstract class AbstractMatView extends JFrame {
 	protected class MatViewMenuBar extends JMenuBar {
 		private static final long serialVersionUID = -4267130216278193894L;
 		public final JMenu fileMenu;
+		public final JMenu transformMenu;
 		public final JMenu windowMenu;
 
 		public MatViewMenuBar() {
@@ -125,6 +152,10 @@ public abstract class AbstractMatView extends JFrame {
 			saveMatrixAsCsvItem.setMnemonic('M');
 			this.fileMenu.add(saveMatrixAsCsvItem);
 
+			final JMenuItem saveMatrixAsPngItem = new JMenuItem(AbstractMatView.this.saveMatrixAsPngAction);
+			saveMatrixAsPngItem.setMnemonic('P');
+			this.fileMenu.add(saveMatrixAsPngItem);
+
 			this.fileMenu.addSeparator();
 
 			final JMenuItem aboutItem = new JMenuItem(AbstractMatView.this.aboutAction);
@@ -140,6 +171,26 @@ public abstract class AbstractMatView extends JFrame {
 			this.add(this.fileMenu);
 			this.fileMenu.setMinimumSize(this.fileMenu.getPreferredSize());
 
+			/** transform menu, selection is shared by all views */
+			this.transformMenu = new JMenu("Transform");
+			this.transformMenu.setMnemonic('T');
+
+			final ButtonGroup transformGroup = new ButtonGroup();
+			this.addTransformItem(transformGroup, "Whole Matrix DCT", CrossMatListener.WHOLE_MAT);
+			for (int blockSize : MainModel.BLOCK_SIZES) {
+				this.addTransformItem(transformGroup, String.format("%dx%d Block DCT", blockSize, blockSize), blockSize);
+			}
+
+			this.transformMenu.addSeparator();
+
+			final ButtonGroup engineGroup = new ButtonGroup();
+			for (DctEngine engine : DctEngineManager.getEnginesArray()) {
+				this.addEngineItem(engineGroup, engine);
+			}
+
+			this.add(this.transformMenu);
+			this.transformMenu.setMinimumSize(this.transformMenu.getPreferredSize());
+
 			/** window menu */
 			this.windowMenu = new JMenu("Window");
 			this.windowMenu.setMnemonic('W');
@@ -166,6 +217,17 @@ public abstract class AbstractMatView extends JFrame {
 
 			this.windowMenu.addSeparator();
 
+			/** frame rate menu, the rate is shared by all views */
+			final JMenu frameRateMenu = new JMenu("Frame Rate");
+			frameRateMenu.setMnemonic('A');
+			final ButtonGroup frameRateGroup = new ButtonGroup();
+			for (int frameRate : FRAME_RATES) {
+				this.addFrameRateItem(frameRateMenu, frameRateGroup, frameRate);
+			}
+			this.windowMenu.add(frameRateMenu);
+
+			this.windowMenu.addSeparator();
+
 			final JMenuItem closeViewItem = new JMenuItem(AbstractMatView.this.closeViewAction);
 			closeViewItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_W, ActionEvent.CTRL_MASK));
 			closeViewItem.setMnemonic('W');
@@ -174,6 +236,106 @@ public abstract class AbstractMatView extends JFrame {
 			this.add(this.windowMenu);
 			this.windowMenu.setMinimumSize(this.windowMenu.getPreferredSize());
 		}
+
+		private void addEngineItem(ButtonGroup group, final DctEngine engine) {
+			final JRadioButtonMenuItem item = new JRadioButtonMenuItem(new AbstractAction(engine.toString()) {
+				private static final long serialVersionUID = -2380561834479621740L;
+
+				@Override
+				public void actionPerformed(ActionEvent e) {
+					try {
+						AbstractMatView.this.controller.setEngine(engine);
+					} catch (IllegalSizeException e1) {
+						AbstractMatView.this.showExceptionDialog(e1);
+					}
+				}
+			});
+			item.setSelected(AbstractMatView.this.controller.getEngine() == engine);
+			group.add(item);
+			this.transformMenu.add(item);
+
+			/** another view may have changed the selection */
+			this.transformMenu.addMenuListener(new MenuListener() {
+				@Override
+				public void menuSelected(MenuEvent e) {
+					item.setSelected(AbstractMatView.this.controller.getEngine() == engine);
+				}
+
+				@Override
+				public void menuDeselected(MenuEvent e) {
+					/** nevermind */
+				}
+
+				@Override
+				public void menuCanceled(MenuEvent e) {
+					/** nevermind */
+				}
+			});
+		}
+
+		private void addFrameRateItem(final JMenu menu, ButtonGroup group, final int frameRate) {
+			final JRadioButtonMenuItem item = new JRadioButtonMenuItem(new AbstractAction(String.format("%d fps", frameRate)) {
+				private static final long serialVersionUID = 6158902917350260157L;
+
+				@Override
+				public void actionPerformed(ActionEvent e) {
+					RenderCache.setFrameRate(frameRate);
+				}
+			});
+			item.setSelected(RenderCache.getFrameRate() == frameRate);
+			group.add(item);
+			menu.add(item);
+
+			/** another view may have changed the selection */
+			menu.addMenuListener(new MenuListener() {
+				@Override
+				public void menuSelected(MenuEvent e) {
+					item.setSelected(RenderCache.getFrameRate() == frameRate);
+				}
+
+				@Override
+				public void menuDeselected(MenuEvent e) {
+					/** nevermind */
+				}
+
+				@Override
+				public void menuCanceled(MenuEvent e) {
+					/** nevermind */
+				}
+			});
+		}
+
+		private void addTransformItem(ButtonGroup group, String name, final int blockSize) {
+			final JRadioButtonMenuItem item = new JRadioButtonMenuItem(new AbstractAction(name) {
+				private static final long serialVersionUID = 4129538209117546283L;
+
+				@Override
+				public void actionPerformed(ActionEvent e) {
+					AbstractMatView.this.controller.setBlockSize(blockSize);
+				}
+			});
+			item.setSelected(AbstractMatView.this.controller.getBlockSize() == blockSize);
+			group.add(item);
+			this.transformMenu.add(item);
+
+			/** another view may have changed the selection */
+			this.transformMenu.addMenuListener(new MenuListener() {
+				@Override
+				public void menuSelected(MenuEvent e) {
+					item.setSelected(AbstractMatView.this.controller.getBlockSize() == blockSize);
+				}
+
+				@Override
+				public void menuDeselected(MenuEvent e) {
+					/** nevermind */
+				}
+
+				@Override
+				public void menuCanceled(MenuEvent e) {
+					/** nevermind */
+				}
+			});
+		}
 	}
 
 	protected Action openImageAction = new AbstractAction("Open Image File ...") {
@@ -218,6 +380,22 @@ public abstract class AbstractMatView extends JFrame {
 		}
 	};
 
+	protected Action saveMatrixAsPngAction = new AbstractAction("Save Matrix As PNG ...") {
+		private static final long serialVersionUID = -2715304861294457353L;
+
+		@Override
+		public void actionPerformed(ActionEvent e) {
+			if (AbstractMatView.this.showPngSaveDialog()) {
+				try {
+					AbstractMatView.this.runExport(AbstractMatView.this.controller.saveMat(fc.getSelectedFile(),
+							AbstractMatView.this.getPngCompressionLevel()));
+				} catch (CvException e1) {
+					AbstractMatView.this.showExceptionDialog(e1);
+				}
+			}
+		}
+	};
+
 	protected Action newSpatialImageViewAction = new AbstractAction("New Spatial Image Window") {
 		private static final long serialVersionUID = -6273581369100540974L;
 
@@ -268,7 +446,7 @@ public abstract class AbstractMatView extends JFrame {
 		@Override
 		public void actionPerformed(ActionEvent e) {
 			Dimension size = ImageSizeDialog.show(AbstractMatView.this, new Dimension(AbstractMatView.this.model.getWidth(),
-					AbstractMatView.this.model.getHeight()));
+					AbstractMatView.this.model.getHeight()), AbstractMatView.this.model.isEvenSizeRequired() ? 2 : 1);
 			if (size != null) {
 				AbstractMatView.this.logger.finest("Size " + size.getWidth() + "/" + size.getHeight());
 				try {
@@ -346,6 +524,75 @@ public abstract class AbstractMatView extends JFrame {
 		JOptionPane.showMessageDialog(AbstractMatView.this, e1.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
 	}
 
+	/**
+	 * shows the save dialog of {@link #fc} with the choice of the compression
+	 * level of a PNG file.
+	 * 
+	 * @return true if a file was chosen
+	 */
+	protected boolean showPngSaveDialog() {
+		fc.setAccessory(pngCompressionAccessory);
+		try {
+			return fc.showSaveDialog(this) == JFileChooser.APPROVE_OPTION;
+		} finally {
+			/** the other dialogs share fc */
+			fc.setAccessory(null);
+		}
+	}
+
+	/**
+	 * @return the compression level chosen in the last
+	 *         {@link #showPngSaveDialog()}
+	 */
+	protected int getPngCompressionLevel() {
+		return pngCompressionAccessory.getLevel();
+	}
+
+	/**
+	 * runs an export, showing its progress in a dialog which allows to cancel
+	 * it, and its failure if any.
+	 * 
+	 * @param task
+	 *            not yet started
+	 */
+	protected void runExport(final PngExportTask task) {
+		final ProgressMonitor monitor = new ProgressMonitor(this, "Saving " + task.getFile().getName(), null, 0, 100);
+		/** the monitor tells nobody it is cancelled, so it is asked */
+		final Timer cancelTimer = new Timer(CANCEL_POLL_MILLIS, new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				if (monitor.isCanceled()) {
+					task.cancel(false);
+				}
+			}
+		});
+		task.addPropertyChangeListener(new PropertyChangeListener() {
+			@Override
+			public void propertyChange(PropertyChangeEvent evt) {
+				if ("progress".equals(evt.getPropertyName())) {
+					monitor.setProgress(task.getProgress());
+				} else if ("state".equals(evt.getPropertyName()) && task.isDone()) {
+					cancelTimer.stop();
+					monitor.close();
+					if (!task.isCancelled()) {
+						try {
+							task.get();
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+						} catch (ExecutionException e) {
+							/** the cancellation may have come while the last band was compressed */
+							if (!(e.getCause() instanceof CancellationException)) {
+								AbstractMatView.this.showExceptionDialog(e.getCause() instanceof Exception ? (Exception) e.getCause() : e);
+							}
+						}
+					}
+				}
+			}
+		});
+		cancelTimer.start();
+		task.execute();
+	}
+
 	protected class ExamplesMenu extends JMenu {
 		private static final long serialVersionUID = 2649315105388795048L;
 
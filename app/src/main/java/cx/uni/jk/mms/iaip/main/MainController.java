@@ -22,8 +22,10 @@ package cx.uni.jk.mms.iaip.main;
 
 import cx.uni.jk.mms.iaip.brush.BrushController;
 import cx.uni.jk.mms.iaip.brush.BrushModel;
+import cx.uni.jk.mms.iaip.dct.DctEngine;
 import cx.uni.jk.mms.iaip.image.ImageController;
 import cx.uni.jk.mms.iaip.mat.IllegalSizeException;
+import cx.uni.jk.mms.iaip.mat.MatModel;
 import cx.uni.jk.mms.iaip.table.MatTableController;
 import cx.uni.jk.mms.iaip.tools.MatTool;
 
@@ -82,6 +84,30 @@ public class MainController {
 		return this.model.getTool();
 	}
 
+	public DctEngine getEngine() {
+		return this.model.getEngine();
+	}
+
+	public void setEngine(DctEngine engine) throws IllegalSizeException {
+		this.model.setEngine(engine);
+	}
+
+	public int getBlockSize() {
+		return this.model.getBlockSize();
+	}
+
+	public void setBlockSize(int blockSize) {
+		this.model.setBlockSize(blockSize);
+	}
+
+	/**
+	 * @param matModel
+	 * @return true if matModel holds the DCT coefficients
+	 */
+	public boolean isFrequencyMatModel(MatModel matModel) {
+		return matModel == this.model.getFrequencyMatModel();
+	}
+
 	public AbstractMatView addNewSpatialImageView() {
 		return this.spatialImageController.addNewView();
 	}
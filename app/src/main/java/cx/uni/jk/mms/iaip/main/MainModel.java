@@ -23,9 +23,11 @@ package cx.uni.jk.mms.iaip.main;
 import java.awt.Dimension;
 
 import cx.uni.jk.mms.iaip.brush.BrushModel;
+import cx.uni.jk.mms.iaip.dct.DctEngine;
 import cx.uni.jk.mms.iaip.mat.CrossMatListener;
 import cx.uni.jk.mms.iaip.mat.IllegalSizeException;
 import cx.uni.jk.mms.iaip.mat.MatModel;
+import cx.uni.jk.mms.iaip.mat.TransferSession;
 import cx.uni.jk.mms.iaip.tools.MatTool;
 import cx.uni.jk.mms.iaip.tools.SimpleBrushTool;
 
@@ -33,8 +35,14 @@ import cx.uni.jk.mms.iaip.tools.SimpleBrushTool;
  * Contains one spatial and one frequency {@link MatModel}
  */
 public class MainModel {
+	/** block sizes offered for block wise DCT, besides the whole mat */
+	public static final int[] BLOCK_SIZES = { 8, 16, 32 };
+
 	private final MatModel spatialMat;
 	private final MatModel frequencyMat;
+	private final CrossMatListener spatialToFrequency;
+	private final CrossMatListener frequencyToSpatial;
+	private final TransferSession transferSession = new TransferSession();
 	private final BrushModel brushModel = new BrushModel();
 	private SimpleBrushTool tool = new SimpleBrushTool();
 
@@ -47,8 +55,56 @@ public class MainModel {
 		this.frequencyMat.setName("Frequency");
 
 		/** set up listeners */
-		this.spatialMat.addMatChangeListener(new CrossMatListener(this.frequencyMat, false));
-		this.frequencyMat.addMatChangeListener(new CrossMatListener(this.spatialMat, true));
+		this.spatialToFrequency = new CrossMatListener(this.frequencyMat, false, this.transferSession);
+		this.frequencyToSpatial = new CrossMatListener(this.spatialMat, true, this.transferSession);
+		this.spatialMat.addMatChangeListener(this.spatialToFrequency);
+		this.frequencyMat.addMatChangeListener(this.frequencyToSpatial);
+	}
+
+	public DctEngine getEngine() {
+		return this.spatialToFrequency.getEngine();
+	}
+
+	/**
+	 * selects the engine doing DCT and IDCT for this model. the frequency mat
+	 * is recalculated from the spatial mat.
+	 * 
+	 * @param engine
+	 * @throws IllegalSizeException
+	 *             if the engine requires even sizes and the current mats are
+	 *             of odd width or height.
+	 */
+	public void setEngine(DctEngine engine) throws IllegalSizeException {
+		if (!engine.supportsOddSizes() && (this.spatialMat.getWidth() % 2 == 1 || this.spatialMat.getHeight() % 2 == 1)) {
+			throw new IllegalSizeException(String.format("%s requires even width and even height.", engine));
+		}
+		this.spatialMat.setEvenSizeRequired(!engine.supportsOddSizes());
+		this.frequencyMat.setEvenSizeRequired(!engine.supportsOddSizes());
+		this.spatialToFrequency.setEngine(engine);
+		this.frequencyToSpatial.setEngine(engine);
+		this.spatialMat.fireMatChangedEvent();
+	}
+
+	/**
+	 * @return {@link CrossMatListener#WHOLE_MAT} or the edge length of the
+	 *         independently transformed blocks
+	 */
+	public int getBlockSize() {
+		return this.spatialToFrequency.getBlockSize();
+	}
+
+	/**
+	 * switches between whole mat and block wise DCT. the frequency mat is
+	 * recalculated from the spatial mat.
+	 * 
+	 * @param blockSize
+	 *            {@link CrossMatListener#WHOLE_MAT} or the even edge length of
+	 *            the blocks
+	 */
+	public void setBlockSize(int blockSize) {
+		this.spatialToFrequency.setBlockSize(blockSize);
+		this.frequencyToSpatial.setBlockSize(blockSize);
+		this.spatialMat.fireMatChangedEvent();
 	}
 
 	public void clearMats(Dimension dim) throws IllegalSizeException {
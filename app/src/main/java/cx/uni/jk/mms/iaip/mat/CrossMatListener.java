@@ -20,84 +20,669 @@
 
 package cx.uni.jk.mms.iaip.mat;
 
-import java.util.logging.Logger;
+import javax.swing.SwingUtilities;
 
 import org.opencv.core.Core;
 import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+import org.opencv.core.Size;
+
+import cx.uni.jk.mms.iaip.dct.CosineBasis;
+import cx.uni.jk.mms.iaip.dct.DctEngine;
+import cx.uni.jk.mms.iaip.dct.DctEngineManager;
+import cx.uni.jk.mms.iaip.dct.IncrementalDct;
 
 /**
- * Transfer changes in one {@link MatModel} to the other using DCT or IDCT.
+ * Transfer changes in one {@link MatModel} to the other using DCT or IDCT of
+ * the selected {@link DctEngine}. Sizes not supported by the selected engine
+ * are transformed by the default engine.
+ * 
+ * Small changes, like brush strokes or single values edited in a table, are
+ * transferred incrementally by {@link IncrementalDct}, based on a snapshot of
+ * the source mat as it was transferred last time.
+ * 
+ * In block mode the mats are split into square blocks which are transformed
+ * independently, like JPEG does with 8x8 blocks. Only the blocks intersecting
+ * the changed area are transformed again.
+ * 
+ * Transfers run on the {@link SerialWorker} of a {@link TransferSession}
+ * shared by both directions, so the event dispatch thread only records what
+ * has changed. Changes arriving while the worker is busy are merged into one
+ * request for the newest state of the source, and the results are published
+ * to the target on the event dispatch thread, in a transaction of the
+ * session. Results of a source which has been loaded again in the meantime
+ * are dropped, so are results for a target loaded meanwhile. Areas of the
+ * target changed by the user meanwhile are copied into the result before it
+ * is published, and transferred back, see {@link TransferSession}.
+ * 
+ * The target is double buffered: the worker writes into the back buffer,
+ * which is swapped with the target's mat on publishing. The buffers are
+ * reallocated only when the size changes.
  */
 public class CrossMatListener implements MatChangeListener {
-	private final Logger logger = Logger.getGlobal();
+	/** block size meaning that the whole mat is transformed at once */
+	public static final int WHOLE_MAT = 0;
 
 	private MatModel target;
 	private boolean inverse;
-	private static boolean ignoreMatEvent = false;
-	private final Object lockIgnoreMatEvent = new Object();
+	private final TransferSession session;
+
+	private volatile int blockSize = WHOLE_MAT;
+	private volatile DctEngine engine = DctEngineManager.getDefaultEngine();
+
+	/**
+	 * requests of the event dispatch thread and results of the worker, guarded
+	 * by lockPending
+	 */
+	private final Object lockPending = new Object();
+	private MatModel pendingSource = null;
+	/** changed area of the pending request, null for all */
+	private Rect pendingArea = null;
+	private boolean pendingLoaded = false;
+	private boolean pendingInvalidate = false;
+	private boolean transferScheduled = false;
+	/**
+	 * true if a transfer waits for a result of the other direction to be
+	 * published, see {@link #resume()}
+	 */
+	private boolean deferred = false;
+	/** incremented by every load, results of older loads are dropped */
+	private int generation = 0;
+
+	/** the buffer not in the target, null until first needed */
+	private Mat back = null;
+	/** true if back holds a result waiting to be swapped into the target */
+	private boolean backQueued = false;
+	/** changed area of the queued result, null for all */
+	private Rect backArea = null;
+	private boolean backLoaded = false;
+	/** source of the queued result and its user changes included */
+	private MatModel backSource = null;
+	private int backVersion = 0;
+	private boolean publishScheduled = false;
+	/**
+	 * area in which the target's mat is newer than back, null for all. empty
+	 * after back has been brought up to date.
+	 */
+	private Rect frontNewer = null;
 
-	public CrossMatListener(MatModel target, boolean inverse) {
+	/** source mat as of the last transfer. worker only. */
+	private Mat snapshot = new Mat();
+	private boolean snapshotValid = false;
+	/**
+	 * buffer holding the last result, null if unknown. in block mode only its
+	 * size is up to date. worker only.
+	 */
+	private Mat result = null;
+	/** data of result, valid only if resultDataValid. worker only. */
+	private float[] resultData = new float[0];
+	private boolean resultDataValid = false;
+
+	/** scratch space of incremental transfers. worker only. */
+	private final Mat sourceArea = new Mat();
+	private final Mat deltaArea = new Mat();
+	private float[] delta = new float[0];
+
+	/**
+	 * @param target
+	 * @param inverse
+	 *            false for DCT, true for IDCT
+	 * @param session
+	 *            shared with the listener of the other direction
+	 */
+	public CrossMatListener(MatModel target, boolean inverse, TransferSession session) {
 		super();
 		this.target = target;
 		this.inverse = inverse;
+		this.session = session;
+		session.addListener(this);
+	}
+
+	/**
+	 * @return the model this listener transfers into
+	 */
+	public MatModel getTarget() {
+		return this.target;
+	}
+
+	public DctEngine getEngine() {
+		return this.engine;
+	}
+
+	/**
+	 * @param engine
+	 *            takes effect with the next transfer.
+	 */
+	public void setEngine(DctEngine engine) {
+		this.engine = engine;
+	}
+
+	public int getBlockSize() {
+		return this.blockSize;
+	}
+
+	/**
+	 * @param blockSize
+	 *            {@link #WHOLE_MAT} or the even edge length of the blocks to
+	 *            transform independently. takes effect with the next transfer.
+	 */
+	public void setBlockSize(int blockSize) {
+		if (blockSize != WHOLE_MAT && (blockSize <= 0 || blockSize % 2 == 1)) {
+			throw new IllegalArgumentException("Block size must be even and > 0 to perform DCT/IDCT.");
+		}
+		this.blockSize = blockSize;
+		this.invalidate();
 	}
 
 	@Override
 	public void matModified(MatChangeEvent e) {
-		synchronized (this.lockIgnoreMatEvent) {
-			if (ignoreMatEvent) {
-				return;
-			}
-			ignoreMatEvent = true;
+		MatModel source = (MatModel) e.getSource();
+		if (this.session.isInTransaction(source)) {
+			/** the source has been changed by the other direction */
+			this.invalidate();
+			return;
 		}
+		this.session.changedByUser(source, e.getChangedArea());
+		this.request(source, e.getChangedArea(), false);
+	}
 
+	@Override
+	public void matLoaded(MatChangeEvent e) {
 		MatModel source = (MatModel) e.getSource();
-		this.transfer(source);
-		this.target.fireMatChangedEvent();
+		if (this.session.isInTransaction(source)) {
+			this.invalidate();
+			return;
+		}
+		this.session.loadedByUser(source);
+		this.request(source, null, true);
+	}
 
-		synchronized (this.lockIgnoreMatEvent) {
-			ignoreMatEvent = false;
+	/**
+	 * the snapshot and the result of the last transfer must not be used for
+	 * the next transfer.
+	 */
+	private void invalidate() {
+		synchronized (this.lockPending) {
+			this.pendingInvalidate = true;
 		}
 	}
 
-	@Override
-	public void matLoaded(MatChangeEvent e) {
-		synchronized (this.lockIgnoreMatEvent) {
-			if (ignoreMatEvent) {
+	/**
+	 * drops the requests and results not yet published, because the target has
+	 * been loaded since. They would overwrite the content loaded.
+	 */
+	void dropResults() {
+		synchronized (this.lockPending) {
+			this.generation++;
+			this.pendingSource = null;
+			this.pendingArea = null;
+			this.pendingLoaded = false;
+			/** the front is newer than back */
+			this.backQueued = false;
+			this.frontNewer = null;
+			/** the snapshot and result may have advanced to a dropped result */
+			this.pendingInvalidate = true;
+		}
+		this.session.resumeTransfers();
+	}
+
+	/**
+	 * @return true if a result is waiting to be published into the target
+	 */
+	boolean isResultQueued() {
+		synchronized (this.lockPending) {
+			return this.backQueued;
+		}
+	}
+
+	/**
+	 * schedules the transfer deferred until the other direction has published
+	 * its result, if any. it defers again if the result is still queued.
+	 */
+	void resume() {
+		synchronized (this.lockPending) {
+			if (this.deferred) {
+				this.deferred = false;
+				if (!this.transferScheduled) {
+					this.transferScheduled = true;
+					this.session.getWorker().execute(this.transferTask);
+				}
+			}
+		}
+	}
+
+	/**
+	 * merges a change into the pending request and schedules a transfer, unless
+	 * one is scheduled already.
+	 * 
+	 * @param source
+	 * @param changedArea
+	 *            null for all
+	 * @param loaded
+	 *            true if source has been loaded or cleared, which drops all
+	 *            results not yet published
+	 */
+	private void request(MatModel source, Rect changedArea, boolean loaded) {
+		synchronized (this.lockPending) {
+			if (loaded) {
+				this.generation++;
+				/**
+				 * a queued result is obsolete, the front is newer than back.
+				 * transfers waiting for it resume after the one scheduled below.
+				 */
+				this.backQueued = false;
+				this.frontNewer = null;
+			}
+			if (this.pendingSource == null) {
+				this.pendingArea = changedArea;
+			} else if (this.pendingArea != null) {
+				this.pendingArea = changedArea == null ? null : union(this.pendingArea, changedArea);
+			}
+			this.pendingSource = source;
+			this.pendingLoaded |= loaded;
+			if (!this.transferScheduled) {
+				this.transferScheduled = true;
+				this.session.getWorker().execute(this.transferTask);
+			}
+		}
+	}
+
+	/**
+	 * takes the pending request and the back buffer, transfers and publishes
+	 * the result. runs on the worker.
+	 */
+	private final Runnable transferTask = new Runnable() {
+		@Override
+		public void run() {
+			CrossMatListener self = CrossMatListener.this;
+
+			/** the source is about to be replaced by a result of the other direction */
+			MatModel waitFor;
+			synchronized (self.lockPending) {
+				waitFor = self.pendingSource;
+			}
+			if (waitFor != null && self.session.isResultQueued(waitFor)) {
+				synchronized (self.lockPending) {
+					self.deferred = true;
+					self.transferScheduled = false;
+				}
+				/** it may have been published before deferred was set */
+				if (!self.session.isResultQueued(waitFor)) {
+					self.resume();
+				}
 				return;
 			}
-			ignoreMatEvent = true;
+
+			MatModel source;
+			Rect changedArea;
+			boolean loaded;
+			int generation;
+			int version;
+			Mat buffer;
+			Mat front;
+			Rect stale;
+			/** area of a result taken back, null for all, empty for none */
+			Rect withdrawnArea = new Rect();
+			synchronized (self.lockPending) {
+				source = self.pendingSource;
+				changedArea = self.pendingArea;
+				loaded = self.pendingLoaded;
+				generation = self.generation;
+				if (self.pendingInvalidate || loaded) {
+					self.snapshotValid = false;
+					self.result = null;
+					self.resultDataValid = false;
+				}
+				self.pendingSource = null;
+				self.pendingArea = null;
+				self.pendingLoaded = false;
+				self.pendingInvalidate = false;
+				self.transferScheduled = false;
+				if (source == null) {
+					/** the request has been dropped */
+					return;
+				}
+				/** the changes of source up to now are read below */
+				version = self.session.getUserVersion(source);
+
+				/** a result not swapped yet is taken back and published again */
+				if (self.backQueued) {
+					self.backQueued = false;
+					withdrawnArea = self.backArea;
+					loaded |= self.backLoaded;
+				}
+				buffer = self.back;
+				front = self.target.getMat();
+				stale = self.frontNewer;
+				self.frontNewer = new Rect();
+			}
+
+			try {
+				Mat matSource = source.getMat();
+				if (buffer == null || !buffer.size().equals(matSource.size())) {
+					buffer = new Mat(matSource.size(), MatModel.MAT_TYPE);
+					self.back = buffer;
+					stale = null;
+				}
+				Rect written = self.transfer(matSource, changedArea, buffer, front, stale);
+				if (isEmpty(written) && isEmpty(withdrawnArea)) {
+					/** back has not been brought up to date */
+					synchronized (self.lockPending) {
+						self.frontNewer = unionOrAll(self.frontNewer, stale);
+					}
+				} else {
+					self.publish(unionOrAll(withdrawnArea, written), loaded, generation, source, version);
+				}
+			} finally {
+				/** nothing may be queued, e.g. after a load */
+				self.session.resumeTransfers();
+			}
 		}
+	};
 
-		MatModel source = (MatModel) e.getSource();
-		try {
-			this.target.clear(source.getWidth(), source.getHeight());
-		} catch (IllegalSizeException e1) {
-			/** this should never happen, die now. */
-			this.logger.severe(e1.getStackTrace().toString());
-			System.exit(e1.hashCode());
+	/**
+	 * transfers changedArea of matSource into matTarget. runs on the worker.
+	 * 
+	 * @param matSource
+	 * @param changedArea
+	 *            null for all
+	 * @param matTarget
+	 *            the back buffer
+	 * @param front
+	 *            the target's mat
+	 * @param stale
+	 *            area in which matTarget is older than front, null for all
+	 * @return the area written, null for all
+	 */
+	private Rect transfer(Mat matSource, Rect changedArea, Mat matTarget, Mat front, Rect stale) {
+		Size size = matSource.size();
+		boolean sameSize = this.result != null && this.result.size().equals(size) && front.size().equals(size);
+		if (this.blockSize != WHOLE_MAT && changedArea != null && sameSize) {
+			return this.transferBlocks(matSource, changedArea, matTarget, front, stale);
 		}
-		this.transfer(source);
-		this.target.fireMatLoadedEvent();
+		if (changedArea != null && sameSize && this.snapshotValid && this.snapshot.size().equals(size)) {
+			Rect area = intersect(changedArea, new Rect(0, 0, matSource.cols(), matSource.rows()));
+			if (area.width <= 0 || area.height <= 0) {
+				return area;
+			}
+			if (isIncrementalCheaper(matSource.rows(), matSource.cols(), area)) {
+				this.transferIncremental(matSource, area, matTarget);
+				return null;
+			}
+		}
+		this.transferAll(matSource, matTarget);
+		return null;
+	}
 
-		synchronized (this.lockIgnoreMatEvent) {
-			ignoreMatEvent = false;
+	/**
+	 * do the transfer of the whole source into matTarget, using DCT or IDCT
+	 */
+	private void transferAll(Mat matSource, Mat matTarget) {
+		if (this.blockSize == WHOLE_MAT) {
+			/** the event dispatch thread may go on changing the source */
+			matSource.copyTo(this.snapshot);
+			this.transform(this.snapshot, matTarget);
+			this.snapshotValid = true;
+		} else {
+			this.engineForBlocks().transformBlocks(matSource, matTarget, new Rect(0, 0, matSource.cols(), matSource.rows()),
+					this.blockSize, this.inverse);
+			/** the snapshot does not describe block transformed mats */
+			this.snapshotValid = false;
 		}
+		this.result = matTarget;
+		this.resultDataValid = false;
 	}
 
 	/**
-	 * do the transfer from source to this.target, using DCT or IDCT
+	 * transform all blocks intersecting changedArea from matSource into the
+	 * same blocks of matTarget, after bringing the rest of matTarget up to
+	 * date with front.
 	 * 
-	 * @param source
+	 * @return the area covered by the transformed blocks
 	 */
-	private void transfer(MatModel source) {
-		Mat matSource = source.getMat();
-		Mat matTarget = new Mat(matSource.size(), MatModel.MAT_TYPE);
+	private Rect transferBlocks(Mat matSource, Rect changedArea, Mat matTarget, Mat front, Rect stale) {
+		int rows = matSource.rows();
+		int cols = matSource.cols();
+		Rect area = intersect(changedArea, new Rect(0, 0, cols, rows));
+		if (area.width <= 0 || area.height <= 0) {
+			return area;
+		}
+
+		/** align to block boundaries */
+		int colStart = area.x / this.blockSize * this.blockSize;
+		int rowStart = area.y / this.blockSize * this.blockSize;
+		int colEnd = area.x + area.width;
+		int rowEnd = area.y + area.height;
+
+		int dirtyColEnd = Math.min(cols, (colEnd + this.blockSize - 1) / this.blockSize * this.blockSize);
+		int dirtyRowEnd = Math.min(rows, (rowEnd + this.blockSize - 1) / this.blockSize * this.blockSize);
+		Rect dirtyArea = new Rect(colStart, rowStart, dirtyColEnd - colStart, dirtyRowEnd - rowStart);
+
+		if (stale == null) {
+			front.copyTo(matTarget);
+		} else if (stale.width > 0 && stale.height > 0) {
+			front.submat(stale).copyTo(matTarget.submat(stale));
+		}
+
+		/** blocks at the right and bottom border may be smaller */
+		this.engineForBlocks().transformBlocks(matSource, matTarget, dirtyArea, this.blockSize, this.inverse);
+
+		/** the snapshot does not describe block transformed mats */
+		this.snapshotValid = false;
+		this.result = matTarget;
+		this.resultDataValid = false;
+
+		return dirtyArea;
+	}
+
+	/**
+	 * DCT or IDCT of matSource into matTarget, which may be a sub mat of the
+	 * same size.
+	 */
+	private void transform(Mat matSource, Mat matTarget) {
+		this.getEngineFor(matSource.rows(), matSource.cols()).transform(matSource, matTarget, this.inverse);
+	}
+
+	private DctEngine engineForBlocks() {
+		return this.getEngineFor(this.blockSize, this.blockSize);
+	}
+
+	private DctEngine getEngineFor(int rows, int cols) {
+		DctEngine selected = this.engine;
+		if (selected.supports(rows, cols)) {
+			return selected;
+		} else {
+			return DctEngineManager.getDefaultEngine();
+		}
+	}
+
+	/**
+	 * transfer only the change inside area from matSource, applied to the last
+	 * result, into matTarget.
+	 * 
+	 * @param matSource
+	 * @param area
+	 *            inside matSource
+	 * @param matTarget
+	 */
+	private void transferIncremental(Mat matSource, Rect area, Mat matTarget) {
+		int rows = matSource.rows();
+		int cols = matSource.cols();
+
+		/**
+		 * delta against the snapshot, which is brought up to date on the way.
+		 * the area is copied first, as the event dispatch thread may go on
+		 * changing the source.
+		 */
+		matSource.submat(area).copyTo(this.sourceArea);
+		Mat snapshotArea = this.snapshot.submat(area);
+		Core.subtract(this.sourceArea, snapshotArea, this.deltaArea);
+		this.sourceArea.copyTo(snapshotArea);
+		if (this.delta.length != area.width * area.height) {
+			this.delta = new float[area.width * area.height];
+		}
+		this.deltaArea.get(0, 0, this.delta);
+
+		if (!this.resultDataValid) {
+			if (this.resultData.length != rows * cols) {
+				this.resultData = new float[rows * cols];
+			}
+			this.result.get(0, 0, this.resultData);
+			this.resultDataValid = true;
+		}
+		CosineBasis rowBasis = CosineBasis.forLength(rows);
+		CosineBasis colBasis = CosineBasis.forLength(cols);
 		if (this.inverse) {
-			Core.idct(matSource, matTarget);
+			IncrementalDct.inverse(rowBasis, colBasis, this.delta, area.x, area.y, area.width, area.height, this.resultData);
 		} else {
-			Core.dct(matSource, matTarget);
+			IncrementalDct.forward(rowBasis, colBasis, this.delta, area.x, area.y, area.width, area.height, this.resultData);
+		}
+
+		matTarget.put(0, 0, this.resultData);
+		this.result = matTarget;
+	}
+
+	/**
+	 * queues the back buffer to be swapped into the target on the event
+	 * dispatch thread, unless the source has been loaded again.
+	 * 
+	 * @param area
+	 *            changed area, null for all
+	 * @param source
+	 * @param version
+	 *            of the changes of source by the user included, see
+	 *            {@link TransferSession#getUserVersion(MatModel)}
+	 */
+	private void publish(Rect area, boolean loaded, int generation, MatModel source, int version) {
+		synchronized (this.lockPending) {
+			if (generation != this.generation) {
+				/** the front is newer than anything in back */
+				this.frontNewer = null;
+				return;
+			}
+			this.backQueued = true;
+			this.backArea = area;
+			this.backLoaded = loaded;
+			this.backSource = source;
+			this.backVersion = version;
+			if (!this.publishScheduled) {
+				this.publishScheduled = true;
+				SwingUtilities.invokeLater(this.publishTask);
+			}
 		}
-		this.target.setMat(matTarget);
+	}
+
+	/**
+	 * swaps the queued back buffer with the target's mat and fires one event.
+	 * the areas of the target changed by the user and not yet transferred back
+	 * are copied into the back buffer first, and fired as changed by the user
+	 * afterwards, so they are transferred back. runs on the event dispatch
+	 * thread.
+	 */
+	private final Runnable publishTask = new Runnable() {
+		@Override
+		public void run() {
+			final CrossMatListener self = CrossMatListener.this;
+			Rect area;
+			boolean loaded;
+			Rect merged;
+			synchronized (self.lockPending) {
+				self.publishScheduled = false;
+				if (!self.backQueued) {
+					return;
+				}
+				Mat front = self.target.getMat();
+				merged = self.session.getUserArea(self.target);
+				if (!front.size().equals(self.back.size())) {
+					/** cannot happen unless the target is set directly */
+					merged = new Rect();
+				} else if (merged == null) {
+					front.copyTo(self.back);
+				} else {
+					merged = intersect(merged, new Rect(0, 0, front.cols(), front.rows()));
+					if (!isEmpty(merged)) {
+						front.submat(merged).copyTo(self.back.submat(merged));
+					}
+				}
+				self.target.setMat(self.back);
+				self.back = front;
+				self.backQueued = false;
+				area = self.backArea;
+				loaded = self.backLoaded;
+				self.frontNewer = area;
+				self.session.transferred(self.backSource, self.backVersion);
+			}
+
+			final Rect publishedArea = area;
+			final boolean publishedLoaded = loaded;
+			self.session.runTransaction(self.target, new Runnable() {
+				@Override
+				public void run() {
+					if (publishedLoaded) {
+						self.target.fireMatLoadedEvent();
+					} else if (publishedArea == null) {
+						self.target.fireMatChangedEvent();
+					} else {
+						self.target.fireMatChangedEvent(publishedArea);
+					}
+				}
+			});
+			if (merged == null) {
+				self.target.fireMatChangedEvent();
+			} else if (!isEmpty(merged)) {
+				self.target.fireMatChangedEvent(merged);
+			}
+			self.session.resumeTransfers();
+		}
+	};
+
+	/**
+	 * an incremental update costs about rows * cols * min(width, height), a
+	 * full transform about rows * cols * (log2(rows) + log2(cols)) with a
+	 * larger constant factor.
+	 */
+	private static boolean isIncrementalCheaper(int rows, int cols, Rect area) {
+		int rank = Math.min(area.width, area.height);
+		return 2 * rank <= log2(rows) + log2(cols);
+	}
+
+	private static int log2(int n) {
+		return 31 - Integer.numberOfLeadingZeros(n);
+	}
+
+	private static Rect intersect(Rect a, Rect b) {
+		int x = Math.max(a.x, b.x);
+		int y = Math.max(a.y, b.y);
+		int width = Math.min(a.x + a.width, b.x + b.width) - x;
+		int height = Math.min(a.y + a.height, b.y + b.height) - y;
+		return new Rect(x, y, Math.max(width, 0), Math.max(height, 0));
+	}
+
+	private static boolean isEmpty(Rect area) {
+		return area != null && (area.width <= 0 || area.height <= 0);
+	}
+
+	/**
+	 * @return the union of a and b, where null means all and empty rects are
+	 *         ignored
+	 */
+	private static Rect unionOrAll(Rect a, Rect b) {
+		if (a == null || b == null) {
+			return null;
+		} else if (isEmpty(a)) {
+			return b;
+		} else if (isEmpty(b)) {
+			return a;
+		} else {
+			return union(a, b);
+		}
+	}
+
+	static Rect union(Rect a, Rect b) {
+		int x = Math.min(a.x, b.x);
+		int y = Math.min(a.y, b.y);
+		int width = Math.max(a.x + a.width, b.x + b.width) - x;
+		int height = Math.max(a.y + a.height, b.y + b.height) - y;
+		return new Rect(x, y, width, height);
 	}
 }
@@ -36,9 +36,6 @@ import java.util.logging.Logger;
 
 import javax.imageio.ImageIO;
 
-import org.opencv.core.Core;
-import org.opencv.core.Core.MinMaxLocResult;
-import org.opencv.core.CvException;
 import org.opencv.core.CvType;
 import org.opencv.core.Mat;
 import org.opencv.core.MatOfByte;
@@ -60,6 +57,15 @@ public class MatModel {
 
 	private Path lastPath;
 
+	/** true as long as the DCT/IDCT in use requires even sizes */
+	private boolean evenSizeRequired = true;
+
+	/** kept up to date by the events fired */
+	private final MatStatistics statistics = new MatStatistics(new Mat());
+
+	/** counts the events fired */
+	private long version = 0;
+
 	public MatModel(String name, int width, int height) {
 		super();
 		this.name = name;
@@ -156,7 +162,8 @@ public class MatModel {
 	 * The image file type must be supported by ImageIO and must be 8 bit gray
 	 * scale due to limitations of the used methods. The image must be of even
 	 * width and even height in order to be processed by OpenCV's DCT/IDCT
-	 * methods.
+	 * methods, unless {@link #setEvenSizeRequired(boolean)} lifted that
+	 * restriction.
 	 * 
 	 * This implementation uses {@link Path} instead of {@link File} in order to
 	 * read the jar from the inside.
@@ -184,8 +191,8 @@ public class MatModel {
 			throw new IllegalSizeException("Image must have width and height > 0.");
 		}
 
-		/** dct images must have odd width or height */
-		if (matRead.width() % 2 == 1 || matRead.height() % 2 == 1) {
+		/** dct images must not have odd width or height */
+		if (this.evenSizeRequired && (matRead.width() % 2 == 1 || matRead.height() % 2 == 1)) {
 			throw new IllegalSizeException("Image must have even width and even height to perform DCT/IDCT.");
 		}
 
@@ -197,6 +204,8 @@ public class MatModel {
 		this.logger.finer("image channels = " + this.mat.channels());
 		this.logger.finer("image depth = " + this.mat.depth());
 
+		this.statistics.reset(this.mat);
+
 		/** remember last file loaded successfully */
 		this.lastPath = path;
 	}
@@ -205,16 +214,18 @@ public class MatModel {
 		return this.lastPath;
 	}
 
-	public void saveMat(File file) throws CvException {
+	/**
+	 * @return a copy of the mat as 8 bit values, as exported: 0..255 are kept,
+	 *         larger ranges are scaled to fit
+	 */
+	public Mat getByteMat() {
 		Mat cloneMat = new MatOfByte();
-		MinMaxLocResult mmlr = Core.minMaxLoc(this.mat);
-		double min = Math.min(mmlr.minVal, 0);
-		double max = Math.max(mmlr.maxVal, 255);
+		double min = Math.min(this.statistics.getMin(), 0);
+		double max = Math.max(this.statistics.getMax(), 255);
 		double alpha = 256.0d / (max - min);
 		double beta = -min * alpha;
 		this.mat.convertTo(cloneMat, CvType.CV_8U, alpha, beta);
-
-		Imgcodecs.imwrite(file.getPath(), cloneMat);
+		return cloneMat;
 	}
 
 	public void saveMatAsCsv(File file) {
@@ -239,11 +250,25 @@ public class MatModel {
 	}
 
 	public void clear(int width, int height) throws IllegalSizeException {
-		if (width % 2 == 1 || height % 2 == 1) {
+		if (this.evenSizeRequired && (width % 2 == 1 || height % 2 == 1)) {
 			throw new IllegalSizeException("Images must have even width and even height in order to perform DCT/IDCT.");
 		}
 
 		this.mat = Mat.zeros(new Size(width, height), MAT_TYPE);
+		this.statistics.reset(this.mat);
+	}
+
+	public boolean isEvenSizeRequired() {
+		return this.evenSizeRequired;
+	}
+
+	/**
+	 * @param evenSizeRequired
+	 *            false if the DCT/IDCT in use is able to transform any size,
+	 *            so images of odd width or height may be loaded.
+	 */
+	public void setEvenSizeRequired(boolean evenSizeRequired) {
+		this.evenSizeRequired = evenSizeRequired;
 	}
 
 	public boolean addMatChangeListener(MatChangeListener l) {
@@ -255,6 +280,8 @@ public class MatModel {
 	}
 
 	public void fireMatChangedEvent() {
+		this.statistics.reset(this.mat);
+		this.version++;
 		MatChangeEvent e = new MatChangeEvent(this);
 		for (MatChangeListener l : this.matChangeListeners) {
 			l.matModified(e);
@@ -262,6 +289,8 @@ public class MatModel {
 	}
 
 	public void fireMatChangedEvent(Rect changedArea) {
+		this.statistics.update(changedArea);
+		this.version++;
 		MatChangeEvent e = new MatChangeEvent(this, changedArea);
 		for (MatChangeListener l : this.matChangeListeners) {
 			l.matModified(e);
@@ -269,14 +298,39 @@ public class MatModel {
 	}
 
 	public void fireMatLoadedEvent() {
+		this.statistics.reset(this.mat);
+		this.version++;
 		MatChangeEvent e = new MatChangeEvent(this);
 		for (MatChangeListener l : this.matChangeListeners) {
 			l.matLoaded(e);
 		}
 	}
 
+	/**
+	 * replaces the mat by one which holds the same values outside the area of
+	 * the event fired next, e.g. a back buffer brought up to date. The
+	 * statistics are kept and updated by that event.
+	 * 
+	 * @param mat
+	 */
 	protected void setMat(Mat mat) {
 		this.mat = mat;
+		this.statistics.rebind(mat);
+	}
+
+	/**
+	 * @return statistics of the values, up to date as of the last event fired
+	 */
+	public MatStatistics getStatistics() {
+		return this.statistics;
+	}
+
+	/**
+	 * @return number of events fired so far, identifies the state of the mat
+	 *         as seen by the listeners
+	 */
+	public long getVersion() {
+		return this.version;
 	}
 
 	public Mat getMat() {
@@ -0,0 +1,269 @@
+/**
+ *    Copyright (C) 2015  Peter Plaimer <dct-tool@tk.jku.at>
+ *
+ *    This file is part of the program
+ *    InterActive Image Processing / Discrete Cosine Transformation (DCT) 
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cx.uni.jk.mms.iaip.mat;
+
+import org.opencv.core.Core;
+import org.opencv.core.Core.MinMaxLocResult;
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+import org.opencv.core.Rect;
+
+/**
+ * Minimum, maximum and a histogram of the values of one mat, kept up to date
+ * from the areas changed, so that filters and views do not scan the whole mat
+ * for every change.
+ * 
+ * The minimum and maximum are remembered with their locations. They are
+ * scanned again only if a changed area contains one of these locations, so
+ * the extreme value may have been overwritten.
+ * 
+ * The histogram has {@link #BINS} bins of equal width on the bit pattern of
+ * the float values, ordered like the values: each bin covers one sign, one
+ * binary exponent and an eighth of the mantissa range, so any range of values
+ * has a relative resolution of 6 to 13 %, however large. It is built on the
+ * first request only, together with the bin of each value, which allows to
+ * move the values of a changed area from their old bins to their new bins.
+ * The bins of quantiles are found in the histogram as well, without sorting
+ * the values.
+ */
+public class MatStatistics {
+	/** number of bins of the histogram */
+	public static final int BINS = 1 << 12;
+	private static final int BIN_SHIFT = 32 - 12;
+
+	private Mat mat;
+
+	private boolean rangeValid = false;
+	private double min;
+	private double max;
+	private Point minLoc;
+	private Point maxLoc;
+
+	/** null until requested */
+	private int[] histogram = null;
+	/** bin of each value in row major order, null with histogram */
+	private char[] bins = null;
+
+	public MatStatistics(Mat mat) {
+		super();
+		this.mat = mat;
+	}
+
+	/**
+	 * forget everything about the values, e.g. after all of them have changed.
+	 * 
+	 * @param mat
+	 *            the mat from now on, may be the same as before
+	 */
+	public synchronized void reset(Mat mat) {
+		this.mat = mat;
+		this.rangeValid = false;
+		this.histogram = null;
+		this.bins = null;
+	}
+
+	/**
+	 * continues with another mat holding the same values, except for the
+	 * areas passed to {@link #update(Rect)} afterwards. Forgets everything if
+	 * its size differs.
+	 * 
+	 * @param mat
+	 */
+	public synchronized void rebind(Mat mat) {
+		if (!mat.size().equals(this.mat.size())) {
+			this.reset(mat);
+		} else {
+			this.mat = mat;
+		}
+	}
+
+	/**
+	 * takes the changed values inside area into account.
+	 * 
+	 * @param area
+	 *            may reach outside the mat
+	 */
+	public synchronized void update(Rect area) {
+		int x = Math.max(area.x, 0);
+		int y = Math.max(area.y, 0);
+		int width = Math.min(area.x + area.width, this.mat.cols()) - x;
+		int height = Math.min(area.y + area.height, this.mat.rows()) - y;
+		if (width <= 0 || height <= 0 || !this.rangeValid && this.histogram == null) {
+			return;
+		}
+
+		Mat part = this.mat.submat(new Rect(x, y, width, height));
+		float[] values = null;
+		if (this.histogram != null) {
+			values = new float[width * height];
+			part.get(0, 0, values);
+		}
+
+		if (this.histogram != null) {
+			int cols = this.mat.cols();
+			for (int row = 0; row < height; row++) {
+				int index = (y + row) * cols + x;
+				for (int col = 0; col < width; col++, index++) {
+					int newBin = binOf(values[row * width + col]);
+					this.histogram[this.bins[index]]--;
+					this.histogram[newBin]++;
+					this.bins[index] = (char) newBin;
+				}
+			}
+		}
+
+		if (this.rangeValid) {
+			Rect inside = new Rect(x, y, width, height);
+			if (inside.contains(this.minLoc) || inside.contains(this.maxLoc)) {
+				this.rangeValid = false;
+			} else {
+				MinMaxLocResult partRange = Core.minMaxLoc(part);
+				if (partRange.minVal < this.min) {
+					this.min = partRange.minVal;
+					this.minLoc = new Point(partRange.minLoc.x + x, partRange.minLoc.y + y);
+				}
+				if (partRange.maxVal > this.max) {
+					this.max = partRange.maxVal;
+					this.maxLoc = new Point(partRange.maxLoc.x + x, partRange.maxLoc.y + y);
+				}
+			}
+		}
+	}
+
+	public synchronized double getMin() {
+		this.validateRange();
+		return this.min;
+	}
+
+	public synchronized double getMax() {
+		this.validateRange();
+		return this.max;
+	}
+
+	/**
+	 * @return the largest absolute value
+	 */
+	public synchronized double getMaxAbs() {
+		this.validateRange();
+		return Math.max(Math.abs(this.min), Math.abs(this.max));
+	}
+
+	/**
+	 * @return number of values in each of the {@link #BINS} bins, see
+	 *         {@link #binOf(float)}. a copy.
+	 */
+	public synchronized int[] getHistogram() {
+		if (this.histogram == null) {
+			this.buildHistogram();
+		}
+		return this.histogram.clone();
+	}
+
+	/**
+	 * finds the bin of a quantile in the histogram. Its bounds change only if
+	 * the quantile moves into another bin, not with every value changed.
+	 * 
+	 * @param fraction
+	 *            0..1 of the values which are smaller than the quantile
+	 * @return the bin holding the quantile, see {@link #lowerBoundOf(int)}
+	 */
+	public synchronized int getQuantileBin(double fraction) {
+		int count = this.getCount();
+		if (count == 0) {
+			return binOf(0.0f);
+		}
+		if (this.histogram == null) {
+			this.buildHistogram();
+		}
+
+		double rank = Math.min(Math.max(fraction, 0.0d), 1.0d) * count;
+		int below = 0;
+		int bin = 0;
+		/** the first bin holding any value, the last one reaching rank */
+		while (bin < BINS - 1 && (this.histogram[bin] == 0 || below + this.histogram[bin] < rank)) {
+			below += this.histogram[bin];
+			bin++;
+		}
+		return bin;
+	}
+
+	/**
+	 * @return number of values
+	 */
+	public synchronized int getCount() {
+		return this.mat.rows() * this.mat.cols();
+	}
+
+	private void validateRange() {
+		if (!this.rangeValid) {
+			if (this.mat.empty()) {
+				this.min = 0.0d;
+				this.max = 0.0d;
+				this.minLoc = new Point(-1, -1);
+				this.maxLoc = new Point(-1, -1);
+			} else {
+				MinMaxLocResult mmlr = Core.minMaxLoc(this.mat);
+				this.min = mmlr.minVal;
+				this.max = mmlr.maxVal;
+				this.minLoc = mmlr.minLoc;
+				this.maxLoc = mmlr.maxLoc;
+			}
+			this.rangeValid = true;
+		}
+	}
+
+	private void buildHistogram() {
+		int count = this.getCount();
+		float[] values = new float[count];
+		if (count > 0) {
+			this.mat.get(0, 0, values);
+		}
+		this.histogram = new int[BINS];
+		this.bins = new char[count];
+		for (int i = 0; i < count; i++) {
+			int bin = binOf(values[i]);
+			this.histogram[bin]++;
+			this.bins[i] = (char) bin;
+		}
+	}
+
+	/**
+	 * @param value
+	 * @return the bin of value, bins are ordered like their values
+	 */
+	public static int binOf(float value) {
+		int bits = Float.floatToIntBits(value);
+		/** flip negative values, so that the unsigned order is the order of values */
+		int ordered = bits < 0 ? ~bits : bits | Integer.MIN_VALUE;
+		return ordered >>> BIN_SHIFT;
+	}
+
+	/**
+	 * @param bin
+	 * @return the smallest value of bin, the inverse of
+	 *         {@link #binOf(float)} on the lower bounds of the bins
+	 */
+	public static float lowerBoundOf(int bin) {
+		int ordered = bin << BIN_SHIFT;
+		int bits = ordered < 0 ? ordered & Integer.MAX_VALUE : ~ordered;
+		return Float.intBitsToFloat(bits);
+	}
+}
@@ -0,0 +1,120 @@
+/**
+ *    Copyright (C) 2015  Peter Plaimer <dct-tool@tk.jku.at>
+ *
+ *    This file is part of the program
+ *    InterActive Image Processing / Discrete Cosine Transformation (DCT) 
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cx.uni.jk.mms.iaip.mat;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs a job on ranges of rows of a large matrix or image on all cores by a
+ * {@link ForkJoinPool}, e.g. the passes of a DCT, the conversion of a mat for
+ * display or the compression of an image.
+ * 
+ * Small matrices stay sequential, since splitting them costs more than it
+ * saves.
+ */
+public final class ParallelRows {
+
+	/** matrices with fewer cells are processed sequentially */
+	public static final int PARALLEL_THRESHOLD = 256 * 256;
+
+	/** rows of one task are not split further below this number of cells */
+	private static final int MIN_TASK_CELLS = 16 * 1024;
+
+	private static final ForkJoinPool pool = new ForkJoinPool();
+
+	private ParallelRows() {
+		/** static methods only */
+	}
+
+	/**
+	 * a job on a range of rows, called by several threads at once.
+	 */
+	public interface RowRangeAction {
+		/**
+		 * @param fromRow
+		 *            inclusive
+		 * @param toRow
+		 *            exclusive
+		 */
+		void run(int fromRow, int toRow);
+	}
+
+	/**
+	 * @param rows
+	 * @param cols
+	 * @return true if a rows x cols matrix is large enough to be split
+	 */
+	public static boolean isParallel(int rows, int cols) {
+		return (long) rows * cols >= PARALLEL_THRESHOLD && pool.getParallelism() > 1;
+	}
+
+	/**
+	 * runs action on disjoint ranges covering rows 0 to rows - 1, in parallel,
+	 * and returns when all are done.
+	 * 
+	 * @param rows
+	 * @param cols
+	 *            length of one row, for sizing the tasks
+	 * @param action
+	 */
+	public static void forEachRowRange(int rows, int cols, RowRangeAction action) {
+		int grain = Math.max(1, MIN_TASK_CELLS / Math.max(1, cols));
+		RowRangeTask task = new RowRangeTask(action, 0, rows, grain);
+		if (ForkJoinTask.getPool() == pool) {
+			/** nested in another task, e.g. blocks of a large area */
+			task.invoke();
+		} else {
+			pool.invoke(task);
+		}
+	}
+
+	/**
+	 * splits its range of rows in halves until it is small enough.
+	 */
+	private static class RowRangeTask extends RecursiveAction {
+		private static final long serialVersionUID = -2931787416028410365L;
+
+		private final RowRangeAction action;
+		private final int fromRow;
+		private final int toRow;
+		private final int grain;
+
+		RowRangeTask(RowRangeAction action, int fromRow, int toRow, int grain) {
+			this.action = action;
+			this.fromRow = fromRow;
+			this.toRow = toRow;
+			this.grain = grain;
+		}
+
+		@Override
+		protected void compute() {
+			if (this.toRow - this.fromRow <= this.grain) {
+				this.action.run(this.fromRow, this.toRow);
+			} else {
+				int middle = (this.fromRow + this.toRow) >>> 1;
+				invokeAll(new RowRangeTask(this.action, this.fromRow, middle, this.grain), new RowRangeTask(this.action, middle,
+						this.toRow, this.grain));
+			}
+		}
+	}
+}
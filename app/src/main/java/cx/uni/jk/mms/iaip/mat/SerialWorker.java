@@ -0,0 +1,84 @@
+/**
+ *    Copyright (C) 2015  Peter Plaimer <dct-tool@tk.jku.at>
+ *
+ *    This file is part of the program
+ *    InterActive Image Processing / Discrete Cosine Transformation (DCT) 
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cx.uni.jk.mms.iaip.mat;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * One background thread running commands off the event dispatch thread, one
+ * after the other, e.g. the transfers of the {@link CrossMatListener}s of a
+ * {@link TransferSession} or the frames of a view.
+ */
+public class SerialWorker implements Executor {
+	private final Logger logger = Logger.getGlobal();
+
+	private final String name;
+
+	private final ExecutorService executor;
+
+	/**
+	 * @param name
+	 *            of the thread
+	 */
+	public SerialWorker(final String name) {
+		super();
+		this.name = name;
+		this.executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, name);
+				/** do not keep the application alive */
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * runs command on the worker thread after all commands executed before.
+	 * exceptions are logged, they do not stop the worker.
+	 */
+	@Override
+	public void execute(final Runnable command) {
+		this.executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					command.run();
+				} catch (RuntimeException e) {
+					SerialWorker.this.logger.log(Level.SEVERE, SerialWorker.this.name + " failed", e);
+				}
+			}
+		});
+	}
+
+	/**
+	 * stops the worker after the commands executed so far.
+	 */
+	public void shutdown() {
+		this.executor.shutdown();
+	}
+}
@@ -0,0 +1,223 @@
+/**
+ *    Copyright (C) 2015  Peter Plaimer <dct-tool@tk.jku.at>
+ *
+ *    This file is part of the program
+ *    InterActive Image Processing / Discrete Cosine Transformation (DCT) 
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation, either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cx.uni.jk.mms.iaip.mat;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.opencv.core.Rect;
+
+/**
+ * Coordinates the {@link CrossMatListener}s linking the mats of one document,
+ * e.g. one spatial and one frequency {@link MatModel}.
+ * 
+ * A listener publishing its result into its target does so in a transaction
+ * of this session. Events fired by the target during the transaction are
+ * caused by the link itself and must not be transferred back. Transactions
+ * are bound to their session and thread, so independent sessions do not
+ * block or disturb each other.
+ * 
+ * A change of a mat outside of a transaction, e.g. by the user, is recorded
+ * until it has been transferred into the other mat. Results of the other
+ * direction published into the mat meanwhile were computed without it, so
+ * the changed area is copied into them from the mat before they are
+ * published, and transferred back. A transfer does not start while a result
+ * of the other direction is waiting to be published, as it would read a
+ * source about to be replaced. Only loading a mat drops the results not yet
+ * published into it, which a newer state of the mat makes obsolete.
+ * 
+ * All listeners of a session share one {@link SerialWorker}, while each
+ * session has its own. The worker runs on a daemon thread, which lives as long
+ * as the session and does not keep the application alive.
+ */
+public class TransferSession {
+	private final SerialWorker worker = new SerialWorker("DCT transfer");
+
+	private final List<CrossMatListener> listeners = new CopyOnWriteArrayList<>();
+
+	private final Object lock = new Object();
+	/** target of the running transaction, null if none */
+	private MatModel transactionTarget = null;
+	private Thread transactionThread = null;
+
+	/**
+	 * area of each mat changed outside of transactions and not yet transferred
+	 * into the other mat, null for all. absent if none. guarded by lock.
+	 */
+	private final Map<MatModel, Rect> userAreas = new HashMap<>();
+	/** counts the changes of each mat outside of transactions, guarded by lock */
+	private final Map<MatModel, Integer> userVersions = new HashMap<>();
+
+	/**
+	 * @param listener
+	 *            a listener linking mats of this session
+	 */
+	void addListener(CrossMatListener listener) {
+		this.listeners.add(listener);
+	}
+
+	/**
+	 * records a change of model outside of a transaction, e.g. by the user.
+	 * 
+	 * @param model
+	 * @param area
+	 *            changed area, null for all
+	 */
+	void changedByUser(MatModel model, Rect area) {
+		synchronized (this.lock) {
+			if (this.userAreas.containsKey(model)) {
+				Rect known = this.userAreas.get(model);
+				this.userAreas.put(model, known == null || area == null ? null : CrossMatListener.union(known, area));
+			} else {
+				this.userAreas.put(model, area);
+			}
+			Integer version = this.userVersions.get(model);
+			this.userVersions.put(model, version == null ? 1 : version + 1);
+		}
+	}
+
+	/**
+	 * records that model has been loaded. Its new content wins over the
+	 * changes of any mat not yet transferred, and results not yet published
+	 * into it are dropped.
+	 * 
+	 * @param model
+	 */
+	void loadedByUser(MatModel model) {
+		synchronized (this.lock) {
+			this.userAreas.clear();
+		}
+		this.changedByUser(model, null);
+		for (CrossMatListener listener : this.listeners) {
+			if (listener.getTarget() == model) {
+				listener.dropResults();
+			}
+		}
+	}
+
+	/**
+	 * @param model
+	 * @return counts the changes of model outside of transactions. a transfer
+	 *         from model started at this count includes them.
+	 */
+	int getUserVersion(MatModel model) {
+		synchronized (this.lock) {
+			Integer version = this.userVersions.get(model);
+			return version == null ? 0 : version;
+		}
+	}
+
+	/**
+	 * @param model
+	 * @return area of model changed outside of transactions and not yet
+	 *         transferred into the other mat, null for all, empty for none
+	 */
+	Rect getUserArea(MatModel model) {
+		synchronized (this.lock) {
+			return this.userAreas.containsKey(model) ? this.userAreas.get(model) : new Rect();
+		}
+	}
+
+	/**
+	 * records that a transfer from model has been published, which included
+	 * the changes up to version. Changes made later are kept.
+	 * 
+	 * @param model
+	 * @param version
+	 *            see {@link #getUserVersion(MatModel)}
+	 */
+	void transferred(MatModel model, int version) {
+		synchronized (this.lock) {
+			if (version == this.getUserVersion(model)) {
+				this.userAreas.remove(model);
+			}
+		}
+	}
+
+	/**
+	 * @param model
+	 * @return true if a result of the transfer into model is waiting to be
+	 *         published
+	 */
+	boolean isResultQueued(MatModel model) {
+		for (CrossMatListener listener : this.listeners) {
+			if (listener.getTarget() == model && listener.isResultQueued()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * starts the transfers waiting for a result to be published
+	 */
+	void resumeTransfers() {
+		for (CrossMatListener listener : this.listeners) {
+			listener.resume();
+		}
+	}
+
+	public SerialWorker getWorker() {
+		return this.worker;
+	}
+
+	/**
+	 * runs fire as a transaction publishing into target.
+	 * 
+	 * @param target
+	 * @param fire
+	 *            fires the events of target
+	 * @throws IllegalStateException
+	 *             if a transaction of this session is running already
+	 */
+	public void runTransaction(MatModel target, Runnable fire) {
+		synchronized (this.lock) {
+			if (this.transactionTarget != null) {
+				throw new IllegalStateException("A transaction is running already.");
+			}
+			this.transactionTarget = target;
+			this.transactionThread = Thread.currentThread();
+		}
+		try {
+			fire.run();
+		} finally {
+			synchronized (this.lock) {
+				this.transactionTarget = null;
+				this.transactionThread = null;
+			}
+		}
+	}
+
+	/**
+	 * @param model
+	 * @return true if the current thread is publishing into model in a
+	 *         transaction of this session, so a change of model has been caused
+	 *         by the link
+	 */
+	public boolean isInTransaction(MatModel model) {
+		synchronized (this.lock) {
+			return this.transactionTarget == model && this.transactionThread == Thread.currentThread();
+		}
+	}
+
+}
@@ -133,7 +133,7 @@ public class MatTableModel extends AbstractRectangularTableModel {
 	public void setValueAt(Object aValue, int rowIndex, int columnIndex) {
 		// TODO: this should be implemented in some controller?
 		this.mat.getMat().put(rowIndex, columnIndex - HEADER_COLUMNS, (Double) aValue);
-		this.mat.fireMatChangedEvent(new Rect(columnIndex, rowIndex, 1, 1));
+		this.mat.fireMatChangedEvent(new Rect(columnIndex - HEADER_COLUMNS, rowIndex, 1, 1));
 	}
 
 }